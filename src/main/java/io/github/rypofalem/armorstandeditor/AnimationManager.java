@@ -0,0 +1,595 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.animation.AnimationClip;
+import io.github.rypofalem.armorstandeditor.animation.Keyframe;
+import io.github.rypofalem.armorstandeditor.animation.PoseStateStore;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.util.EulerAngle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Records keyframe animations from stands posed with the normal edit modes and plays them back. Clips are saved to
+ * animations.yml, and the clip a stand plays is stored on the stand itself, so animations survive restarts and start
+ * again whenever the stand's chunk loads.
+ * <p>
+ * All animated stands are driven by one task. Stands are kept grouped by chunk and region section, and each tick the
+ * sections are worked through in place (or, on Folia, each on the region that owns it). Clips are interpolated once
+ * when they're created, so a tick only looks frames up, and a stand is only written to when its frame actually
+ * differs from the last one it was given. Stands playing the same clip move in step.
+ * <p>
+ * Chunks nobody is near are updated less often or not at all, see {@link #getInterval}. The state of each animated
+ * stand is kept off the heap in a {@link PoseStateStore}.
+ */
+public class AnimationManager implements Runnable, Listener {
+
+    private static final String FILE_NAME = "animations.yml";
+    private static final PosePart[] PARTS = PosePart.values();
+    private static final int LOD_REFRESH = 10; // Ticks between checks of how close the nearest player is to each chunk
+    private static final Pattern CLIP_NAME = Pattern.compile("[A-Za-z0-9_-]+"); // Used as a YAML key, so no dots
+
+    private final ArmorStandEditorPlugin plugin;
+    private final Debug debug;
+    private final File file;
+    private final NamespacedKey clipKey;
+    private final NamespacedKey originKey;
+    private final Map<String, AnimationClip> clips = new ConcurrentHashMap<>();
+    private final Map<UUID, Recording> recordings = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<Long, Section>> worlds = new ConcurrentHashMap<>(); // World -> region section -> chunks
+    private final Map<UUID, AnimatedStand> animated = new ConcurrentHashMap<>();
+    private final PoseStateStore store = new PoseStateStore();
+    private final Map<UUID, Viewer> viewers = new ConcurrentHashMap<>();
+    private long tick; // Only touched by the tick task
+
+    // Metrics
+    private final AtomicLong frameUpdates = new AtomicLong();
+    private final AtomicLong avoidedUpdates = new AtomicLong();
+
+    public AnimationManager(ArmorStandEditorPlugin plugin) {
+        this.plugin = plugin;
+        this.debug = new Debug(plugin);
+        this.file = new File(plugin.getDataFolder(), FILE_NAME);
+        this.clipKey = new NamespacedKey(plugin, "animation");
+        this.originKey = new NamespacedKey(plugin, "animation_origin");
+        Scheduler.runSyncTaskTimer(plugin, this, 1, 1);
+    }
+
+    @Override
+    public void run() {
+        long now = ++tick;
+        if (now % LOD_REFRESH == 0 && plugin.animationLod) refreshViewers();
+        for (Map<Long, Section> sections : worlds.values()) {
+            for (Section section : sections.values()) {
+                if (!Scheduler.isFolia()) {
+                    section.tick(now);
+                    continue;
+                }
+                if (section.busy) continue; // The region has not got round to the last tick yet
+                section.busy = true;
+                Scheduler.runAtLocation(plugin, section.anchor, () -> {
+                    try {
+                        section.tick(now);
+                    } finally {
+                        section.busy = false;
+                    }
+                });
+            }
+        }
+    }
+
+    // Player positions are read on each player's own thread and kept for the sections to check against
+    private void refreshViewers() {
+        viewers.keySet().removeIf(id -> Bukkit.getPlayer(id) == null);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            Scheduler.executeAtEntity(plugin, player, () -> {
+                Location location = player.getLocation();
+                viewers.put(player.getUniqueId(), new Viewer(location.getWorld().getUID(), location.getX(), location.getZ()));
+            }, null);
+        }
+    }
+
+    /**
+     * How often stands in a chunk centred on the given point should be updated: every tick with a player within
+     * animationLodNear blocks, every animationLodInterval ticks within animationLodFar, and not at all beyond that.
+     * Frozen stands jump straight to the right frame once someone comes close again.
+     */
+    private int getInterval(UUID world, double x, double z) {
+        if (!plugin.animationLod) return 1;
+        double nearest = Double.MAX_VALUE;
+        for (Viewer viewer : viewers.values()) {
+            if (!viewer.world().equals(world)) continue;
+            double dx = viewer.x() - x;
+            double dz = viewer.z() - z;
+            nearest = Math.min(nearest, dx * dx + dz * dz);
+        }
+        if (nearest <= plugin.animationLodNear * plugin.animationLodNear) return 1;
+        if (nearest <= plugin.animationLodFar * plugin.animationLodFar) return Math.max(1, plugin.animationLodInterval);
+        return 0;
+    }
+
+    // On the stand's thread: moves it to the given frame, writing only what differs from the frame it is on
+    private void apply(AnimatedStand stand, long now) {
+        ArmorStand armorStand = stand.armorStand;
+        if (!armorStand.isValid()) {
+            remove(stand);
+            return;
+        }
+        if (Scheduler.isFolia() && !Scheduler.isOwnedByCurrentRegion(armorStand)) return; // Wandered off to another region
+
+        AnimationClip clip = stand.clip;
+        int frame = (int) (now % clip.getLength());
+        int previous = store.getFrame(stand.slot);
+        if (frame == previous) return;
+
+        DoubleBuffer frames = clip.getFrames();
+        int length = clip.getLength();
+        for (PosePart part : PARTS) {
+            int x = part.ordinal() * 3 * length;
+            int y = x + length;
+            int z = y + length;
+            if (previous >= 0 && frames.get(x + previous) == frames.get(x + frame) && frames.get(y + previous) == frames.get(y + frame)
+                    && frames.get(z + previous) == frames.get(z + frame)) continue;
+            part.set(armorStand, new EulerAngle(frames.get(x + frame), frames.get(y + frame), frames.get(z + frame)));
+        }
+        if (previous < 0 || changed(frames, length, AnimationClip.OFFSET_X, previous, frame)
+                || changed(frames, length, AnimationClip.OFFSET_Y, previous, frame)
+                || changed(frames, length, AnimationClip.OFFSET_Z, previous, frame)
+                || changed(frames, length, AnimationClip.YAW, previous, frame)) {
+            Scheduler.transform(armorStand, store.getLocation(stand.slot, stand.world,
+                    frames.get(AnimationClip.OFFSET_X * length + frame), frames.get(AnimationClip.OFFSET_Y * length + frame),
+                    frames.get(AnimationClip.OFFSET_Z * length + frame), frames.get(AnimationClip.YAW * length + frame)));
+        }
+        store.setFrame(stand.slot, frame);
+        frameUpdates.incrementAndGet();
+    }
+
+    private static boolean changed(DoubleBuffer frames, int length, int channel, int previous, int frame) {
+        return frames.get(channel * length + previous) != frames.get(channel * length + frame);
+    }
+
+    /**
+     * Starts recording a new clip from the stand. The stand's current state is the first keyframe.
+     */
+    public void record(Player player, ArmorStand armorStand, String name) {
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        Scheduler.executeAtEntity(plugin, armorStand, () -> {
+            plugin.getCoalescer().flush(armorStand);
+            Location origin = armorStand.getLocation();
+            Recording recording = new Recording(name, armorStand, origin);
+            recording.keyframes.add(Keyframe.capture(0, armorStand, origin));
+            recordings.put(player.getUniqueId(), recording);
+            debug.log("Player '" + player.getDisplayName() + "' started recording animation '" + name + "'");
+            pe.sendMessage("animrecording", name);
+        }, null);
+    }
+
+    /**
+     * Adds the stand's current state as a keyframe the given number of ticks after the last one.
+     */
+    public void addKeyframe(Player player, int ticks) {
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        Recording recording = recordings.get(player.getUniqueId());
+        if (recording == null) {
+            pe.sendMessage("animnorecording", "warn", null);
+            return;
+        }
+        int tick = recording.getLastTick() + ticks;
+        if (tick >= plugin.animationMaxLength) {
+            pe.sendMessage("animtoolong", "warn", String.valueOf(plugin.animationMaxLength));
+            return;
+        }
+
+        ArmorStand armorStand = recording.armorStand;
+        Scheduler.executeAtEntity(plugin, armorStand, () -> {
+            if (!armorStand.isValid()) {
+                recordings.remove(player.getUniqueId(), recording);
+                pe.sendMessage("animnorecording", "warn", null);
+                return;
+            }
+            plugin.getCoalescer().flush(armorStand);
+            synchronized (recording) {
+                recording.keyframes.add(Keyframe.capture(tick, armorStand, recording.origin));
+                pe.sendMessage("animkey", String.valueOf(recording.keyframes.size()));
+            }
+        }, () -> recordings.remove(player.getUniqueId(), recording));
+    }
+
+    /**
+     * Turns the recording into a clip. With returnTicks above 0 the clip eases back to its first keyframe over that
+     * many ticks before it starts over, instead of jumping back.
+     */
+    public void saveRecording(Player player, int returnTicks) {
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        Recording recording = recordings.get(player.getUniqueId());
+        if (recording == null) {
+            pe.sendMessage("animnorecording", "warn", null);
+            return;
+        }
+
+        List<Keyframe> keyframes;
+        synchronized (recording) {
+            keyframes = new ArrayList<>(recording.keyframes);
+        }
+        if (keyframes.size() < 2) {
+            pe.sendMessage("animnokeys", "warn", null);
+            return;
+        }
+        if (returnTicks > 0) {
+            int tick = keyframes.get(keyframes.size() - 1).getTick() + returnTicks;
+            if (tick >= plugin.animationMaxLength) {
+                pe.sendMessage("animtoolong", "warn", String.valueOf(plugin.animationMaxLength));
+                return;
+            }
+            keyframes.add(keyframes.get(0).at(tick));
+        }
+
+        recordings.remove(player.getUniqueId(), recording);
+        AnimationClip clip = new AnimationClip(recording.name, keyframes);
+        clips.put(clip.getName(), clip);
+        for (AnimatedStand stand : animated.values()) {
+            if (!stand.clip.getName().equals(clip.getName())) continue;
+            Scheduler.executeAtEntity(plugin, stand.armorStand, () -> {
+                if (animated.get(stand.armorStand.getUniqueId()) != stand) return;
+                stand.clip = clip;
+                store.setFrame(stand.slot, -1);
+            }, null);
+        }
+        save();
+        debug.log("Player '" + player.getDisplayName() + "' saved animation '" + clip.getName() + "' with " + keyframes.size() + " keyframes over " + clip.getLength() + " ticks");
+        pe.sendMessage("animsaved", clip.getName());
+    }
+
+    public boolean cancelRecording(UUID player) {
+        return recordings.remove(player) != null;
+    }
+
+    /**
+     * Starts the stand on the clip. A stand that is already animated keeps its origin and switches clips.
+     */
+    public void play(ArmorStand armorStand, AnimationClip clip) {
+        Scheduler.executeAtEntity(plugin, armorStand, () -> {
+            if (!armorStand.isValid()) return;
+            plugin.getCoalescer().flush(armorStand);
+            AnimatedStand current = animated.get(armorStand.getUniqueId());
+            Location origin = current != null ? store.getOrigin(current.slot, current.world) : armorStand.getLocation();
+            PersistentDataContainer data = armorStand.getPersistentDataContainer();
+            data.set(clipKey, PersistentDataType.STRING, clip.getName());
+            data.set(originKey, PersistentDataType.STRING, origin.getX() + "," + origin.getY() + "," + origin.getZ() + "," + origin.getYaw());
+            add(armorStand, clip, origin);
+        }, null);
+    }
+
+    /**
+     * Stops the stand's animation and puts it back on its origin. Must be called on the thread owning the stand.
+     * Returns false if it was not animated.
+     */
+    public boolean stop(ArmorStand armorStand) {
+        PersistentDataContainer data = armorStand.getPersistentDataContainer();
+        if (!data.has(clipKey, PersistentDataType.STRING)) return false;
+        data.remove(clipKey);
+        data.remove(originKey);
+        AnimatedStand stand = animated.get(armorStand.getUniqueId());
+        if (stand != null) {
+            Location origin = store.getOrigin(stand.slot, stand.world);
+            remove(stand);
+            Scheduler.transform(armorStand, origin);
+        }
+        return true;
+    }
+
+    public static boolean isValidName(String name) {
+        return CLIP_NAME.matcher(name).matches();
+    }
+
+    public AnimationClip getClip(String name) {
+        return clips.get(name);
+    }
+
+    public List<String> getClipNames() {
+        return new ArrayList<>(new TreeSet<>(clips.keySet()));
+    }
+
+    /**
+     * Deletes the clip. Stands playing it stop where they are but stay tagged, so they pick it up again if a clip
+     * with the same name is saved and their chunk reloads.
+     */
+    public boolean deleteClip(String name) {
+        if (clips.remove(name) == null) return false;
+        for (AnimatedStand stand : animated.values()) {
+            if (stand.clip.getName().equals(name)) Scheduler.executeAtEntity(plugin, stand.armorStand, () -> remove(stand), null);
+        }
+        save();
+        return true;
+    }
+
+    // On the stand's thread: starts it if it carries an animation
+    private void register(ArmorStand armorStand) {
+        PersistentDataContainer data = armorStand.getPersistentDataContainer();
+        String name = data.get(clipKey, PersistentDataType.STRING);
+        if (name == null) return;
+        AnimationClip clip = clips.get(name);
+        if (clip == null) {
+            debug.log("ArmorStand " + armorStand.getUniqueId() + " plays unknown animation '" + name + "'");
+            return;
+        }
+        Location origin = parseOrigin(armorStand.getWorld(), data.get(originKey, PersistentDataType.STRING));
+        add(armorStand, clip, origin != null ? origin : armorStand.getLocation());
+    }
+
+    private static Location parseOrigin(World world, String origin) {
+        if (origin == null) return null;
+        String[] parts = origin.split(",");
+        if (parts.length != 4) return null;
+        try {
+            return new Location(world, Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Float.parseFloat(parts[3]), 0);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Adding and removing stands must happen on the stand's thread, like everything else touching its slot
+    private synchronized void add(ArmorStand armorStand, AnimationClip clip, Location origin) {
+        long chunk = Selection.chunkKey(origin);
+        AnimatedStand stand = new AnimatedStand(armorStand, origin.getWorld(), store.allocate(origin, chunk), clip);
+        AnimatedStand previous = animated.put(armorStand.getUniqueId(), stand);
+        if (previous != null) discard(previous);
+        worlds.computeIfAbsent(stand.world.getUID(), id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(getSectionKey(chunk), key -> new Section(origin))
+                .add(stand, chunk);
+    }
+
+    private synchronized void remove(AnimatedStand stand) {
+        if (animated.remove(stand.armorStand.getUniqueId(), stand)) discard(stand);
+    }
+
+    // Takes the stand out of its section and hands its slot back
+    private void discard(AnimatedStand stand) {
+        long chunk = store.getChunk(stand.slot);
+        store.release(stand.slot);
+        Map<Long, Section> sections = worlds.get(stand.world.getUID());
+        if (sections == null) return;
+        long key = getSectionKey(chunk);
+        Section section = sections.get(key);
+        if (section != null && section.remove(stand, chunk)) sections.remove(key);
+    }
+
+    private static long getSectionKey(long chunk) {
+        return Selection.chunkKey(Selection.chunkX(chunk) >> Scheduler.REGION_SECTION_SHIFT, Selection.chunkZ(chunk) >> Scheduler.REGION_SECTION_SHIFT);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    void onEntitiesLoad(EntitiesLoadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            if (entity instanceof ArmorStand armorStand) register(armorStand);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    void onEntitiesUnload(EntitiesUnloadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            AnimatedStand stand = animated.get(entity.getUniqueId());
+            if (stand != null) remove(stand);
+        }
+    }
+
+    /**
+     * Loads the saved clips and starts the stands already loaded (after a reload). On Folia no chunks are loaded yet
+     * when plugins enable, and the stands are picked up by the load event instead.
+     */
+    public void load() {
+        if (file.exists()) {
+            ConfigurationSection section = YamlConfiguration.loadConfiguration(file).getConfigurationSection("clips");
+            if (section != null) {
+                for (String name : section.getKeys(false)) {
+                    AnimationClip clip = AnimationClip.load(name, section.getConfigurationSection(name));
+                    if (clip == null) {
+                        plugin.getLogger().warning("Could not load animation '" + name + "' from " + FILE_NAME);
+                        continue;
+                    }
+                    clips.put(name, clip);
+                }
+            }
+        }
+
+        if (!Scheduler.isFolia()) {
+            for (World world : Bukkit.getWorlds()) {
+                for (ArmorStand armorStand : world.getEntitiesByClass(ArmorStand.class)) register(armorStand);
+            }
+        }
+        debug.log("Loaded " + clips.size() + " animations, " + animated.size() + " animated ArmorStands");
+    }
+
+    private synchronized void save() {
+        YamlConfiguration config = new YamlConfiguration();
+        for (AnimationClip clip : clips.values()) clip.save(config.createSection("clips." + clip.getName()));
+        try {
+            config.save(file);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not save animations to " + FILE_NAME + ": " + e.getMessage());
+        }
+    }
+
+    public int getClipCount() {
+        return clips.size();
+    }
+
+    public int getAnimatedCount() {
+        return animated.size();
+    }
+
+    public long getFrameUpdateCount() {
+        return frameUpdates.get();
+    }
+
+    // Direct memory used for the state of animated stands
+    public long getStoreBytes() {
+        return store.getReservedBytes();
+    }
+
+    // Stand updates skipped because no player was close enough to need them
+    public long getAvoidedUpdateCount() {
+        return avoidedUpdates.get();
+    }
+
+    private static class Recording {
+        final String name;
+        final ArmorStand armorStand;
+        final Location origin;
+        final List<Keyframe> keyframes = new ArrayList<>();
+
+        Recording(String name, ArmorStand armorStand, Location origin) {
+            this.name = name;
+            this.armorStand = armorStand;
+            this.origin = origin;
+        }
+
+        synchronized int getLastTick() {
+            return keyframes.get(keyframes.size() - 1).getTick();
+        }
+    }
+
+    // Everything else about the stand is kept in its slot of the store
+    private static class AnimatedStand {
+        final ArmorStand armorStand;
+        final World world;
+        final int slot;
+        volatile AnimationClip clip;
+
+        AnimatedStand(ArmorStand armorStand, World world, int slot, AnimationClip clip) {
+            this.armorStand = armorStand;
+            this.world = world;
+            this.slot = slot;
+            this.clip = clip;
+        }
+    }
+
+    // Where a player was at the last viewer refresh
+    private record Viewer(UUID world, double x, double z) {
+    }
+
+    // The stands of one chunk and how often they are updated at the moment
+    private static class ChunkStands {
+        final long chunk;
+        final double centerX;
+        final double centerZ;
+        volatile AnimatedStand[] stands;
+        int interval = 1; // Ticks between updates, 0 while nobody is close enough to see them
+        long checked = -LOD_REFRESH; // Checked on the first tick
+
+        ChunkStands(long chunk, AnimatedStand stand) {
+            this.chunk = chunk;
+            this.centerX = (Selection.chunkX(chunk) << 4) + 8;
+            this.centerZ = (Selection.chunkZ(chunk) << 4) + 8;
+            this.stands = new AnimatedStand[]{stand};
+        }
+    }
+
+    // The stands of a region section, by chunk
+    private class Section {
+        final Location anchor;
+        final UUID world;
+        final Map<Long, ChunkStands> chunks = new ConcurrentHashMap<>();
+        volatile boolean busy;
+
+        Section(Location anchor) {
+            this.anchor = anchor.clone();
+            this.world = anchor.getWorld().getUID();
+        }
+
+        void tick(long now) {
+            for (ChunkStands chunk : chunks.values()) {
+                AnimatedStand[] stands = chunk.stands;
+                if (now - chunk.checked >= LOD_REFRESH) {
+                    chunk.interval = getInterval(world, chunk.centerX, chunk.centerZ);
+                    chunk.checked = now;
+                }
+                // Staggered by chunk so the mid range chunks don't all update on the same tick
+                if (chunk.interval == 0 || (chunk.interval > 1 && Math.floorMod(now + chunk.chunk, chunk.interval) != 0)) {
+                    avoidedUpdates.addAndGet(stands.length);
+                    continue;
+                }
+                for (AnimatedStand stand : stands) apply(stand, now);
+            }
+        }
+
+        // Called under the manager's lock
+        void add(AnimatedStand stand, long key) {
+            ChunkStands chunk = chunks.get(key);
+            if (chunk == null) {
+                chunks.put(key, new ChunkStands(key, stand));
+                return;
+            }
+            AnimatedStand[] grown = Arrays.copyOf(chunk.stands, chunk.stands.length + 1);
+            grown[grown.length - 1] = stand;
+            chunk.stands = grown;
+        }
+
+        // Called under the manager's lock. Returns true once the section is empty
+        boolean remove(AnimatedStand stand, long key) {
+            ChunkStands chunk = chunks.get(key);
+            if (chunk != null) {
+                AnimatedStand[] stands = chunk.stands;
+                int index = -1;
+                for (int i = 0; i < stands.length; i++) {
+                    if (stands[i] == stand) index = i;
+                }
+                if (index >= 0) {
+                    if (stands.length == 1) {
+                        chunks.remove(key);
+                    } else {
+                        AnimatedStand[] shrunk = new AnimatedStand[stands.length - 1];
+                        System.arraycopy(stands, 0, shrunk, 0, index);
+                        System.arraycopy(stands, index + 1, shrunk, index, stands.length - index - 1);
+                        chunk.stands = shrunk;
+                    }
+                }
+            }
+            return chunks.isEmpty();
+        }
+    }
+}
@@ -24,6 +24,8 @@ import com.jeff_media.updatechecker.UpdateChecker;
 import com.jeff_media.updatechecker.UserAgentBuilder;
 
 import io.github.rypofalem.armorstandeditor.Metrics.*;
+import io.github.rypofalem.armorstandeditor.api.ArmorStandEditService;
+import io.github.rypofalem.armorstandeditor.api.ListenedEvent;
 import io.github.rypofalem.armorstandeditor.language.Language;
 
 import io.papermc.lib.PaperLib;
@@ -32,6 +34,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.Damageable;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scoreboard.Scoreboard;
 import org.bukkit.scoreboard.Team;
@@ -101,6 +104,37 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
     //Misc Options
     boolean allowedToRetrieveOwnPlayerHead = false;
     boolean adminOnlyNotifications = false;
+    int undoHistorySize = 64;
+    int undoHistoryMaxEntries = 4096;
+    int selectionLimit = 256;
+    int selectionMaxRadius = 32;
+
+    //Performance Options
+    boolean governorEnabled = true;
+    double governorMsptThreshold;
+    double governorTickBudget;
+    int governorMaxQueued;
+    private EditGovernor governor;
+    boolean loadSheddingEnabled = true;
+    List<Double> loadSheddingThresholds;
+    double loadSheddingRecovery;
+    double loadSheddingRange;
+    private LoadShedder loadShedder;
+    boolean coalesceEdits = true;
+    private EditCoalescer coalescer;
+    double bulkTickBudget;
+    boolean bulkBossBar = true;
+    private BulkExecutor bulkExecutor;
+    double dragMinDistance;
+    float dragMinAngle;
+    private DragController dragController;
+    int animationKeyInterval;
+    int animationMaxLength;
+    boolean animationLod = true;
+    double animationLodNear;
+    double animationLodFar;
+    int animationLodInterval;
+    private AnimationManager animationManager;
 
     //Glow Entity Colors
     public Scoreboard scoreboard;
@@ -131,7 +165,8 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
         //Spigot Check
         hasSpigot = getHasSpigot();
         hasPaper = getHasPaper();
-        hasFolia = Scheduler.isFolia();
+        hasFolia = getHasFolia();
+        debug.log("Capabilities: " + Capabilities.describe());
 
         //Get NMS Version
         if (hasPaper || hasFolia) {
@@ -301,6 +336,48 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
 
         adminOnlyNotifications = getConfig().getBoolean("adminOnlyNotifications", true);
 
+        //Undo History - Edits kept per player for /ase undo, asedit.history.<n> raises it per player
+        undoHistorySize = getConfig().getInt("undoHistorySize", 64);
+        undoHistoryMaxEntries = getConfig().getInt("undoHistoryMaxEntries", 4096);
+
+        //Selections - Stands a player can edit at once and how far /ase select may reach
+        selectionLimit = getConfig().getInt("selectionLimit", 256);
+        selectionMaxRadius = getConfig().getInt("selectionMaxRadius", 32);
+
+        //Edit Governor - Queue edits while the server is over its tick budget
+        governorEnabled = getConfig().getBoolean("editGovernor", true);
+        governorMsptThreshold = getConfig().getDouble("governorMsptThreshold", 45);
+        governorTickBudget = getConfig().getDouble("governorTickBudget", 2);
+        governorMaxQueued = getConfig().getInt("governorMaxQueued", 32);
+
+        //Load Shedding - Turn off cosmetic work step by step while lagging
+        loadSheddingEnabled = getConfig().getBoolean("loadShedding", true);
+        loadSheddingThresholds = getConfig().getDoubleList("loadSheddingThresholds");
+        if (loadSheddingThresholds.isEmpty()) loadSheddingThresholds = List.of(40.0, 44.0, 47.0, 50.0, 55.0);
+        loadSheddingRecovery = getConfig().getDouble("loadSheddingRecovery", 3);
+        loadSheddingRange = getConfig().getDouble("loadSheddingRange", 4);
+
+        //Coalesce pose and position edits into one update per stand per tick
+        coalesceEdits = getConfig().getBoolean("coalesceEdits", true);
+
+        //Bulk Edits - Milliseconds per tick spent on edits to a selection, and whether to show their progress
+        bulkTickBudget = getConfig().getDouble("bulkTickBudget", 5);
+        bulkBossBar = getConfig().getBoolean("bulkBossBar", true);
+
+        //Drag Mode - How far (blocks) or how much (degrees) the target has to change before the stand is moved
+        dragMinDistance = getConfig().getDouble("dragMinDistance", 0.1);
+        dragMinAngle = (float) getConfig().getDouble("dragMinAngle", 5);
+
+        //Animations - Default ticks between recorded keyframes, and the longest a clip may be (in ticks)
+        animationKeyInterval = getConfig().getInt("animationKeyInterval", 20);
+        animationMaxLength = getConfig().getInt("animationMaxLength", 1200);
+
+        //Animation Level Of Detail - Update animated stands less often (or not at all) the further away the nearest player is
+        animationLod = getConfig().getBoolean("animationLod", true);
+        animationLodNear = getConfig().getDouble("animationLodNear", 48);
+        animationLodFar = getConfig().getDouble("animationLodFar", 96);
+        animationLodInterval = getConfig().getInt("animationLodInterval", 4);
+
         debugFlag = getConfig().getBoolean("debugFlag", false);
         if (debugFlag) {
             getServer().getLogger().log(Level.INFO, "[ArmorStandEditor-Debug] ArmorStandEditor Debug Mode is now ENABLED! Use this ONLY for testing Purposes. If you can see this and you have debug disabled, please report it as a bug!");
@@ -320,14 +397,31 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
         //Get Metrics from bStats
         getMetrics();
 
+        governor = new EditGovernor(this);
+        loadShedder = new LoadShedder(this);
+        coalescer = new EditCoalescer(this);
         editorManager = new PlayerEditorManager(this);
+        bulkExecutor = new BulkExecutor(this);
+        bulkExecutor.load();
+        dragController = new DragController(this);
+        animationManager = new AnimationManager(this);
+        animationManager.load();
         CommandEx execute = new CommandEx(this);
 
         //CommandExecution and TabCompletion
         Objects.requireNonNull(getCommand("ase")).setExecutor(execute);
         Objects.requireNonNull(getCommand("ase")).setTabCompleter(execute);
+        if (Capabilities.BRIGADIER_COMMANDS) BrigadierCommands.register(this, execute); //Client side completion on Paper
 
         getServer().getPluginManager().registerEvents(editorManager, this);
+        getServer().getPluginManager().registerEvents(animationManager, this);
+
+        //Lets other plugins edit stands through the same protections, coalescing and scheduling
+        getServer().getServicesManager().register(ArmorStandEditService.class, new EditService(this), this, ServicePriority.Normal);
+
+        //Skip building events nobody listens to. Refreshed when plugins come and go, and now and then for late listeners
+        ListenedEvent.refresh();
+        Scheduler.runTaskTimer(this, ListenedEvent::refresh, 100, 100);
 
     }
 
@@ -420,6 +514,12 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (bulkExecutor != null) bulkExecutor.shutdown(); // Keep the progress of unfinished bulk edits
+        if (editorManager != null) {
+            editorManager.endPreviews();
+            editorManager.endBatches();
+        }
+
         for (Player player : Bukkit.getServer().getOnlinePlayers()) {
             if (PaperLib.getHolder(player.getOpenInventory().getTopInventory(), false).getHolder() == editorManager.getMenuHolder()) {
                 player.closeInventory();
@@ -434,6 +534,7 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
 
     public String getNmsVersion() {
         //  return this.getServer().getClass().getPackage().getName().replace(".", ",").split(",")[3];
+        if (nmsVersion != null) return nmsVersion; // Resolved during onEnable
         if (getHasPaper() || getHasFolia()){
             return this.getMinecraftVersion();
         } else { 
@@ -442,29 +543,17 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
     }
 
     public boolean getHasSpigot() {
-        try {
-            Class.forName("org.spigotmc.CustomTimingsHandler");
-            nmsVersionNotLatest = "SpigotMC ASAP.";
-            return true;
-        } catch (ClassNotFoundException e) {
-            nmsVersionNotLatest = "";
-            return false;
-        }
+        nmsVersionNotLatest = Capabilities.SPIGOT ? "SpigotMC ASAP." : "";
+        return Capabilities.SPIGOT;
     }
 
     public boolean getHasPaper() {
-        try {
-            Class.forName("com.destroystokyo.paper.PaperConfig");
-            nmsVersionNotLatest = "PaperMC ASAP.";
-            return true;
-        } catch (ClassNotFoundException e) {
-            nmsVersionNotLatest = "";
-            return false;
-        }
+        nmsVersionNotLatest = Capabilities.PAPER ? "PaperMC ASAP." : "";
+        return Capabilities.PAPER;
     }
 
     public boolean getHasFolia() {
-        return Scheduler.isFolia();
+        return Capabilities.FOLIA;
     }
 
     //Will be useful for later.....
@@ -673,6 +762,48 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
         allowedToRetrieveOwnPlayerHead = getConfig().getBoolean("allowedToRetrieveOwnPlayerHead", true);
         adminOnlyNotifications = getConfig().getBoolean("adminOnlyNotifications", true);
 
+        //Undo History - Edits kept per player for /ase undo, asedit.history.<n> raises it per player
+        undoHistorySize = getConfig().getInt("undoHistorySize", 64);
+        undoHistoryMaxEntries = getConfig().getInt("undoHistoryMaxEntries", 4096);
+
+        //Selections - Stands a player can edit at once and how far /ase select may reach
+        selectionLimit = getConfig().getInt("selectionLimit", 256);
+        selectionMaxRadius = getConfig().getInt("selectionMaxRadius", 32);
+
+        //Edit Governor - Queue edits while the server is over its tick budget
+        governorEnabled = getConfig().getBoolean("editGovernor", true);
+        governorMsptThreshold = getConfig().getDouble("governorMsptThreshold", 45);
+        governorTickBudget = getConfig().getDouble("governorTickBudget", 2);
+        governorMaxQueued = getConfig().getInt("governorMaxQueued", 32);
+
+        //Load Shedding - Turn off cosmetic work step by step while lagging
+        loadSheddingEnabled = getConfig().getBoolean("loadShedding", true);
+        loadSheddingThresholds = getConfig().getDoubleList("loadSheddingThresholds");
+        if (loadSheddingThresholds.isEmpty()) loadSheddingThresholds = List.of(40.0, 44.0, 47.0, 50.0, 55.0);
+        loadSheddingRecovery = getConfig().getDouble("loadSheddingRecovery", 3);
+        loadSheddingRange = getConfig().getDouble("loadSheddingRange", 4);
+
+        //Coalesce pose and position edits into one update per stand per tick
+        coalesceEdits = getConfig().getBoolean("coalesceEdits", true);
+
+        //Bulk Edits - Milliseconds per tick spent on edits to a selection, and whether to show their progress
+        bulkTickBudget = getConfig().getDouble("bulkTickBudget", 5);
+        bulkBossBar = getConfig().getBoolean("bulkBossBar", true);
+
+        //Drag Mode - How far (blocks) or how much (degrees) the target has to change before the stand is moved
+        dragMinDistance = getConfig().getDouble("dragMinDistance", 0.1);
+        dragMinAngle = (float) getConfig().getDouble("dragMinAngle", 5);
+
+        //Animations - Default ticks between recorded keyframes, and the longest a clip may be (in ticks)
+        animationKeyInterval = getConfig().getInt("animationKeyInterval", 20);
+        animationMaxLength = getConfig().getInt("animationMaxLength", 1200);
+
+        //Animation Level Of Detail - Update animated stands less often (or not at all) the further away the nearest player is
+        animationLod = getConfig().getBoolean("animationLod", true);
+        animationLodNear = getConfig().getDouble("animationLodNear", 48);
+        animationLodFar = getConfig().getDouble("animationLodFar", 96);
+        animationLodInterval = getConfig().getInt("animationLodInterval", 4);
+
         //Add Ability to check for UpdatePerms that Notify Ops - https://github.com/Wolfieheart/ArmorStandEditor/issues/86
         opUpdateNotification = getConfig().getBoolean("opUpdateNotification", true);
         updateCheckerInterval = getConfig().getDouble("updateCheckerInterval", 24);
@@ -695,6 +826,8 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
             }
 
         }
+
+        ListenedEvent.refresh();
     }
 
     public static ArmorStandEditorPlugin instance() {
@@ -774,6 +907,30 @@ public class ArmorStandEditorPlugin extends JavaPlugin {
         return iconKey;
     }
 
+    public EditGovernor getGovernor() {
+        return governor;
+    }
+
+    public LoadShedder getLoadShedder() {
+        return loadShedder;
+    }
+
+    public EditCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    public BulkExecutor getBulkExecutor() {
+        return bulkExecutor;
+    }
+
+    public DragController getDragController() {
+        return dragController;
+    }
+
+    public AnimationManager getAnimationManager() {
+        return animationManager;
+    }
+
     public double getMinScaleValue() {
         return minScaleValue;
     }
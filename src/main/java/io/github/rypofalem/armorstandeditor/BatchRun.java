@@ -0,0 +1,363 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.modes.AdjustmentMode;
+import io.github.rypofalem.armorstandeditor.modes.Axis;
+import io.github.rypofalem.armorstandeditor.modes.EditMode;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a file from the plugin's batch folder for a player. Every line picks stands and makes one edit to them,
+ * the same edit the player would make by selecting them and clicking one with the edit tool in that mode:
+ * <pre>
+ * # Turn the heads of the shopkeepers around you
+ * radius=16 tag=shopkeeper mode=head axis=y adj=coarse
+ * uuid=0d3c4f0e-8a5b-4a8e-9d62-2a1f6c3e7b10 mode=invisible value=true
+ * cuboid=100,64,-20,140,80,20 mode=placement axis=y adj=fine reverse
+ * </pre>
+ * Stands are picked with one of uuid=, radius= (blocks around the player) or cuboid=x1,y1,z1,x2,y2,z2 (loaded chunks only),
+ * optionally narrowed down by tag= (a scoreboard tag), and always from the player's world. The edit is mode= with
+ * axis=, adj=, reverse (or reverse=true/false) and for toggles value=true/false where they matter. A line edits at most
+ * as many stands as a selection may hold.
+ * <p>
+ * Each line becomes a bulk edit, so it runs within the bulk tick budget with the usual permission and protection checks,
+ * events, undo history and progress bar. The next line is only read once that edit is done, so lines apply in order
+ * and the file is read as it goes rather than up front. A dry run only picks the stands and reports how many each line
+ * would edit. The first line that can not be read stops the run, as the lines after it may depend on it.
+ * <p>
+ * Everything runs on the player's thread. Nothing is kept across restarts, other than the bulk edit of the current line.
+ */
+final class BatchRun {
+
+    static final String FOLDER = "batch";
+
+    private final ArmorStandEditorPlugin plugin;
+    private final PlayerEditor pe;
+    private final String name;
+    private final BufferedReader reader;
+    private final boolean dryRun;
+    private int lineNumber;
+    private int selected; // Stands picked so far
+    private int edited;
+    private BulkJob job;  // Of the line being applied
+    private boolean done;
+
+    private BatchRun(ArmorStandEditorPlugin plugin, PlayerEditor pe, String name, BufferedReader reader, boolean dryRun) {
+        this.plugin = plugin;
+        this.pe = pe;
+        this.name = name;
+        this.reader = reader;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Opens the named file in the batch folder, or returns null if there is no such file. Nothing outside the folder can be opened.
+     */
+    static BatchRun open(ArmorStandEditorPlugin plugin, PlayerEditor pe, String name, boolean dryRun) throws IOException {
+        File folder = new File(plugin.getDataFolder(), FOLDER);
+        if (!folder.exists() && !folder.mkdirs()) return null;
+        File file = new File(folder, name);
+        if (!file.getCanonicalFile().toPath().startsWith(folder.getCanonicalFile().toPath()) || !file.isFile()) return null;
+        return new BatchRun(plugin, pe, name, Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8), dryRun);
+    }
+
+    static List<String> getFileNames(ArmorStandEditorPlugin plugin) {
+        String[] names = new File(plugin.getDataFolder(), FOLDER).list();
+        if (names == null) return Collections.emptyList();
+        List<String> files = new ArrayList<>(List.of(names));
+        Collections.sort(files);
+        return files;
+    }
+
+    void start() {
+        Player player = pe.getPlayer();
+        if (player != null) Scheduler.executeAtEntity(plugin, player, this::next, this::stop);
+    }
+
+    // Stops reading, leaving the bulk edit of the current line to finish
+    void stop() {
+        done = true;
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    void cancel() {
+        stop();
+        if (job != null) job.cancelled = true;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    // Reads lines until one has to wait, for stands in other regions to be picked or for its bulk edit
+    private void next() {
+        Player player = pe.getPlayer();
+        if (done || player == null) {
+            stop();
+            return;
+        }
+
+        long deadline = System.nanoTime() + (long) (plugin.bulkTickBudget * 1_000_000.0);
+        try {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                text = text.trim();
+                if (text.isEmpty() || text.startsWith("#")) continue;
+
+                Line line = Line.parse(pe, text, plugin.selectionMaxRadius);
+                CompletableFuture<Map<Long, List<UUID>>> found = select(player, line);
+                if (!found.isDone()) {
+                    found.thenAccept(chunks -> later(player, () -> {
+                        if (!done && apply(player, line, chunks)) next();
+                    }));
+                    return;
+                }
+                if (!apply(player, line, found.join())) return;
+                if (System.nanoTime() >= deadline) {
+                    later(player, this::next);
+                    return;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            fail(e.getMessage());
+            return;
+        } catch (IOException e) {
+            fail("the file could not be read");
+            return;
+        }
+
+        stop();
+        if (dryRun) {
+            pe.sendMessage("batchdrydone", String.valueOf(selected));
+        } else {
+            pe.sendMessage("batchdone", String.valueOf(edited));
+        }
+    }
+
+    // Next tick on the player's thread. Started over on the player's thread again if they left or changed region
+    private void later(Player player, Runnable runnable) {
+        Scheduler.runAtEntity(plugin, player, runnable, this::stop);
+    }
+
+    // Reports the line and starts its bulk edit. Returns true if the next line can be read straight away
+    private boolean apply(Player player, Line line, Map<Long, List<UUID>> chunks) {
+        int count = 0;
+        boolean full = false;
+        Map<Long, UUID[]> stands = new HashMap<>();
+        for (Map.Entry<Long, List<UUID>> chunk : chunks.entrySet()) {
+            List<UUID> ids = chunk.getValue();
+            if (count + ids.size() > plugin.selectionLimit) { // Capped like a selection
+                ids = ids.subList(0, plugin.selectionLimit - count);
+                full = true;
+            }
+            if (!ids.isEmpty()) stands.put(chunk.getKey(), ids.toArray(new UUID[0]));
+            count += ids.size();
+            if (full) break;
+        }
+        selected += count;
+        pe.sendMessage("batchline", lineNumber + ": " + count);
+        if (full) pe.sendMessage("selectfull", "warn", String.valueOf(plugin.selectionLimit));
+        if (dryRun || count == 0) return true;
+
+        BulkJob lineJob = new BulkJob(pe.getUUID(), player.getWorld().getUID(), line.operation, stands);
+        lineJob.quiet = true;
+        job = lineJob;
+        plugin.getBulkExecutor().submit(lineJob);
+        lineJob.finished.thenRun(() -> later(player, () -> {
+            edited += lineJob.getEdited();
+            if (done) return;
+            if (lineJob.isCancelled()) { // With /ase bulk cancel
+                stop();
+                pe.sendMessage("batchcancelled", null);
+                return;
+            }
+            next();
+        }));
+        return false;
+    }
+
+    private void fail(String reason) {
+        stop();
+        pe.sendMessage("batcherror", "warn", lineNumber + " of " + name + ", " + reason);
+    }
+
+    private CompletableFuture<Map<Long, List<UUID>>> select(Player player, Line line) {
+        World world = player.getWorld();
+        Map<Long, List<UUID>> chunks = new HashMap<>();
+        if (line.uuid != null) {
+            if (Bukkit.getEntity(line.uuid) instanceof ArmorStand stand && stand.getWorld() == world && line.matches(stand)) {
+                chunks.computeIfAbsent(Selection.chunkKey(stand.getLocation()), k -> new ArrayList<>()).add(stand.getUniqueId());
+            }
+            return CompletableFuture.completedFuture(chunks);
+        }
+
+        if (line.cuboid == null) {
+            Location center = player.getLocation();
+            for (Entity entity : player.getNearbyEntities(line.radius, line.radius, line.radius)) {
+                if (entity instanceof ArmorStand stand && stand.getLocation().distanceSquared(center) <= line.radius * line.radius && line.matches(stand)) {
+                    chunks.computeIfAbsent(Selection.chunkKey(stand.getLocation()), k -> new ArrayList<>()).add(stand.getUniqueId());
+                }
+            }
+            return CompletableFuture.completedFuture(chunks);
+        }
+
+        // Every chunk is searched by the region owning it, the same as /ase select cuboid
+        BoundingBox box = line.cuboid;
+        int minX = box.getMin().getBlockX() >> 4;
+        int maxX = (box.getMax().getBlockX() - 1) >> 4;
+        int minZ = box.getMin().getBlockZ() >> 4;
+        int maxZ = (box.getMax().getBlockZ() - 1) >> 4;
+        Map<Long, List<UUID>> found = new ConcurrentHashMap<>();
+        CompletableFuture<Map<Long, List<UUID>>> future = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger((maxX - minX + 1) * (maxZ - minZ + 1));
+        for (int chunkX = minX; chunkX <= maxX; chunkX++) {
+            for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+                int x = chunkX;
+                int z = chunkZ;
+                Scheduler.runAtLocation(plugin, new Location(world, (x << 4) + 8, 0, (z << 4) + 8), () -> {
+                    if (world.isChunkLoaded(x, z)) {
+                        List<UUID> stands = new ArrayList<>();
+                        for (Entity entity : world.getChunkAt(x, z).getEntities()) {
+                            if (entity instanceof ArmorStand stand && box.contains(stand.getLocation().toVector()) && line.matches(stand)) {
+                                stands.add(stand.getUniqueId());
+                            }
+                        }
+                        if (!stands.isEmpty()) found.put(Selection.chunkKey(x, z), stands);
+                    }
+                    if (remaining.decrementAndGet() == 0) future.complete(found);
+                });
+            }
+        }
+        return future;
+    }
+
+    // One line of the file. Parsing throws IllegalArgumentException with the reason the line can not be used
+    private static final class Line {
+        UUID uuid;
+        double radius;
+        BoundingBox cuboid;
+        String tag;
+        StandOperation operation;
+
+        boolean matches(ArmorStand armorStand) {
+            return tag == null || armorStand.getScoreboardTags().contains(tag);
+        }
+
+        static Line parse(PlayerEditor pe, String text, double maxRadius) {
+            Line line = new Line();
+            EditMode mode = null;
+            Axis axis = Axis.X;
+            AdjustmentMode adjustment = AdjustmentMode.COARSE;
+            boolean reverse = false;
+            boolean value = true;
+            int selectors = 0;
+
+            for (String token : text.split("\\s+")) {
+                String[] pair = token.split("=", 2);
+                String key = pair[0].toLowerCase();
+                String arg = pair.length > 1 ? pair[1] : "";
+                try {
+                    switch (key) {
+                        case "uuid" -> {
+                            line.uuid = UUID.fromString(arg);
+                            selectors++;
+                        }
+                        case "radius" -> {
+                            line.radius = Math.min(maxRadius, Double.parseDouble(arg));
+                            selectors++;
+                        }
+                        case "cuboid" -> {
+                            line.cuboid = parseCuboid(arg, maxRadius * 2 + 1);
+                            selectors++;
+                        }
+                        case "tag" -> line.tag = arg;
+                        case "mode" -> mode = find(EditMode.values(), arg, token);
+                        case "axis" -> axis = find(Axis.values(), arg, token);
+                        case "adj" -> adjustment = find(AdjustmentMode.values(), arg, token);
+                        case "value" -> value = parseBoolean(arg, token);
+                        case "reverse" -> reverse = pair.length == 1 || parseBoolean(arg, token);
+                        default -> throw new IllegalArgumentException("unknown option " + token);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("bad number in " + token);
+                }
+            }
+
+            if (selectors != 1) throw new IllegalArgumentException("use one of uuid=, radius= or cuboid=");
+            if (mode == null) throw new IllegalArgumentException("no mode= given");
+            line.operation = StandOperation.of(pe, mode, axis, adjustment, reverse, value);
+            if (line.operation == null) throw new IllegalArgumentException("mode " + mode + " can not be used here");
+            return line;
+        }
+
+        private static BoundingBox parseCuboid(String arg, double maxSide) {
+            String[] parts = arg.split(",");
+            if (parts.length != 6) throw new IllegalArgumentException("cuboid= needs x1,y1,z1,x2,y2,z2");
+            int[] corners = new int[6];
+            for (int i = 0; i < 6; i++) corners[i] = Integer.parseInt(parts[i].trim());
+            BoundingBox box = new BoundingBox(Math.min(corners[0], corners[3]), Math.min(corners[1], corners[4]), Math.min(corners[2], corners[5]),
+                    Math.max(corners[0], corners[3]) + 1, Math.max(corners[1], corners[4]) + 1, Math.max(corners[2], corners[5]) + 1);
+            if (box.getWidthX() > maxSide || box.getHeight() > maxSide || box.getWidthZ() > maxSide) {
+                throw new IllegalArgumentException("the cuboid is larger than " + (int) maxSide + " blocks");
+            }
+            return box;
+        }
+
+        private static boolean parseBoolean(String arg, String token) {
+            if (arg.equalsIgnoreCase("true")) return true;
+            if (arg.equalsIgnoreCase("false")) return false;
+            throw new IllegalArgumentException("expected true or false in " + token);
+        }
+
+        // Enum constants by their display name, ignoring case, like the /ase mode and axis arguments
+        private static <T extends Enum<T>> T find(T[] values, String arg, String token) {
+            for (T candidate : values) {
+                if (candidate.toString().equalsIgnoreCase(arg) || candidate.name().equalsIgnoreCase(arg)) return candidate;
+            }
+            throw new IllegalArgumentException("unknown value in " + token);
+        }
+    }
+}
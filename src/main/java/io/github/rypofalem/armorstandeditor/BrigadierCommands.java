@@ -0,0 +1,173 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import io.papermc.paper.command.brigadier.CommandSourceStack;
+import io.papermc.paper.command.brigadier.Commands;
+import io.papermc.paper.plugin.lifecycle.event.types.LifecycleEvents;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registers /ase as a Brigadier command on Paper, over the plugin.yml command. The client then knows every subcommand and
+ * argument up front: it completes them without asking the server and rejects bad input (an unknown mode, slot 12...)
+ * before sending it. Subcommands the player lacks the permission for are left out of their tree altogether.
+ * <p>
+ * The tree only describes the syntax. Running a command hands the typed words to CommandEx, same as on Spigot,
+ * so both share one implementation. Only touched when Capabilities.BRIGADIER_COMMANDS is true.
+ */
+final class BrigadierCommands {
+
+    private final ArmorStandEditorPlugin plugin;
+    private final CommandEx executor;
+
+    private BrigadierCommands(ArmorStandEditorPlugin plugin, CommandEx executor) {
+        this.plugin = plugin;
+        this.executor = executor;
+    }
+
+    static void register(ArmorStandEditorPlugin plugin, CommandEx executor) {
+        BrigadierCommands commands = new BrigadierCommands(plugin, executor);
+        plugin.getLifecycleManager().registerEventHandler(LifecycleEvents.COMMANDS, event ->
+                event.registrar().register(commands.build(), "Changes the function of the armorstand edit tool.", List.of("asedit", "armorstandeditor")));
+    }
+
+    private LiteralCommandNode<CommandSourceStack> build() {
+        LiteralArgumentBuilder<CommandSourceStack> root = Commands.literal("ase")
+                .requires(source -> isPlayerOrConsole(source.getSender()) && source.getSender().hasPermission("asedit.basic"))
+                .executes(this::run);
+
+        // Console only has these four
+        root.then(literal("help", null)).then(literal("?", null)).then(literal("version", null)).then(literal("reload", "asedit.reload"));
+        root.then(literal("perf", "asedit.perf"));
+
+        root.then(choice(player("mode", null), lower(CommandEx.MODE_OPTIONS)));
+        root.then(choice(player("axis", null), lower(CommandEx.AXIS_OPTIONS)));
+        root.then(choice(player("adj", null), lower(CommandEx.ADJ_OPTIONS)));
+        root.then(player("slot", null).then(argument("slot", IntegerArgumentType.integer(1, 9))));
+        root.then(player("update", "asedit.update"));
+        root.then(player("give", "asedit.give"));
+        root.then(player("playerhead", null));
+        root.then(player("stats", "asedit.stats"));
+        root.then(player("hotbar", null));
+        root.then(player("undo", "asedit.undo").then(argument("steps", IntegerArgumentType.integer(1))));
+        root.then(player("redo", "asedit.undo").then(argument("steps", IntegerArgumentType.integer(1))));
+
+        LiteralArgumentBuilder<CommandSourceStack> select = player("select", "asedit.select");
+        for (String option : CommandEx.SELECT_OPTIONS) {
+            LiteralArgumentBuilder<CommandSourceStack> node = literal(option, null);
+            if (option.equals("radius")) node.then(argument("blocks", DoubleArgumentType.doubleArg(0)));
+            select.then(node);
+        }
+        root.then(select);
+        root.then(player("bulk", "asedit.select").then(literal("cancel", null)));
+        root.then(player("preview", "asedit.preview").then(literal("commit", null)).then(literal("cancel", null)));
+
+        LiteralArgumentBuilder<CommandSourceStack> anim = player("anim", "asedit.animate");
+        for (String option : CommandEx.ANIM_OPTIONS) {
+            LiteralArgumentBuilder<CommandSourceStack> node = literal(option, null);
+            switch (option) {
+                case "record" -> node.then(argument("name", StringArgumentType.word()));
+                case "play", "delete" -> node.then(Commands.argument("name", StringArgumentType.word())
+                        .suggests((context, builder) -> {
+                            // Clip and batch file names change at runtime, so these few are asked from the server
+                            String typed = builder.getRemainingLowerCase();
+                            for (String name : plugin.getAnimationManager().getClipNames()) {
+                                if (name.toLowerCase().startsWith(typed)) builder.suggest(name);
+                            }
+                            return builder.buildFuture();
+                        })
+                        .executes(this::run));
+                case "key", "save" -> node.then(argument("ticks", IntegerArgumentType.integer(1)));
+                default -> {
+                }
+            }
+            anim.then(node);
+        }
+        root.then(anim);
+
+        root.then(player("batch", "asedit.batch")
+                .then(literal("run", null).then(Commands.argument("file", StringArgumentType.word())
+                        .suggests((context, builder) -> {
+                            for (String name : BatchRun.getFileNames(plugin)) {
+                                if (name.toLowerCase().startsWith(builder.getRemainingLowerCase())) builder.suggest(name);
+                            }
+                            return builder.buildFuture();
+                        })
+                        .executes(this::run)
+                        .then(literal("dryrun", null))))
+                .then(literal("cancel", null)));
+
+        return root.build();
+    }
+
+    // CommandEx matches arguments ignoring case, and its permission checks for a few modes expect them lower case
+    private static List<String> lower(List<String> options) {
+        return options.stream().map(String::toLowerCase).toList();
+    }
+
+    private LiteralArgumentBuilder<CommandSourceStack> choice(LiteralArgumentBuilder<CommandSourceStack> node, List<String> options) {
+        for (String option : options) node.then(literal(option, null));
+        return node;
+    }
+
+    private LiteralArgumentBuilder<CommandSourceStack> literal(String name, String permission) {
+        LiteralArgumentBuilder<CommandSourceStack> node = Commands.literal(name).executes(this::run);
+        if (permission != null) node.requires(source -> source.getSender().hasPermission(permission));
+        return node;
+    }
+
+    // A subcommand console can not use
+    private LiteralArgumentBuilder<CommandSourceStack> player(String name, String permission) {
+        LiteralArgumentBuilder<CommandSourceStack> node = Commands.literal(name).executes(this::run);
+        node.requires(source -> source.getSender() instanceof Player && (permission == null || source.getSender().hasPermission(permission)));
+        return node;
+    }
+
+    private RequiredArgumentBuilder<CommandSourceStack, ?> argument(String name, ArgumentType<?> type) {
+        return Commands.argument(name, type).executes(this::run);
+    }
+
+    private int run(CommandContext<CommandSourceStack> context) {
+        // Only this command's own text, the input also holds whatever ran it, such as /execute ... run
+        String input = context.getRange().get(context.getInput());
+        if (input.startsWith("/")) input = input.substring(1);
+        String[] words = input.trim().split("\\s+");
+        executor.onCommand(context.getSource().getSender(), plugin.getCommand("ase"), words[0], Arrays.copyOfRange(words, 1, words.length));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static boolean isPlayerOrConsole(CommandSender sender) {
+        return sender instanceof Player || sender instanceof ConsoleCommandSender;
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.api.ArmorStandBatchManipulatedEvent;
+import io.github.rypofalem.armorstandeditor.api.ListenedEvent;
+import io.github.rypofalem.armorstandeditor.api.StandDelta;
+import io.papermc.lib.PaperLib;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarStyle;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Works through bulk edits (an edit applied to a whole selection) a chunk at a time, so a large selection is spread
+ * over several ticks instead of stalling one. Chunks are taken round-robin between jobs until the configured number
+ * of milliseconds per tick is used up. Unloaded chunks are loaded asynchronously first, never generated.
+ * <p>
+ * Jobs pause while their owner is offline, show their progress on a boss bar and are saved to bulkjobs.yml every few
+ * seconds and when the server stops, so they carry on after a restart. On Folia a job is split by region and every
+ * region works through its own part in parallel. The budget is per thread and tick, shared by every job running there,
+ * including the edits other plugins make through the ArmorStandEditService.
+ */
+public class BulkExecutor implements Runnable {
+
+    private static final String FILE_NAME = "bulkjobs.yml";
+    private static final long SAVE_PERIOD_TICKS = 100;
+    private static final long TICK_NANOS = 50_000_000L;
+    // Start of the current tick-long window and the budget used in it, for the thread
+    private static final ThreadLocal<long[]> WINDOW = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final ArmorStandEditorPlugin plugin;
+    private final Debug debug;
+    private final File file;
+    private final List<BulkJob> jobs = new CopyOnWriteArrayList<>(); // Submitted from region threads on Folia
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private int next = 0;
+
+    public BulkExecutor(ArmorStandEditorPlugin plugin) {
+        this.plugin = plugin;
+        this.debug = new Debug(plugin);
+        this.file = new File(plugin.getDataFolder(), FILE_NAME);
+        Scheduler.runSyncTaskTimer(plugin, this, 1, 1);
+        // Off the ticking threads on Paper, on the global region on Folia, so edits never wait on the disk
+        Scheduler.runTaskTimer(plugin, () -> {
+            if (dirty.getAndSet(false)) save();
+        }, SAVE_PERIOD_TICKS, SAVE_PERIOD_TICKS);
+    }
+
+    public void submit(BulkJob job) {
+        jobs.add(job);
+        debug.log("Bulk edit " + job.getId() + " queued: " + (job.isServiceEdit() ? "service edit" : job.getOperation().getMode())
+                + " on " + job.getTotal() + " ArmorStands in " + job.getChunkCount() + " chunks");
+        if (!job.isServiceEdit()) dirty.set(true);
+    }
+
+    /**
+     * Stops all of the player's jobs. Returns how many were running.
+     */
+    public int cancel(UUID owner) {
+        int count = 0;
+        for (BulkJob job : jobs) {
+            if (owner.equals(job.getOwner()) && !job.cancelled) {
+                job.cancelled = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public List<BulkJob> getJobs(UUID owner) {
+        List<BulkJob> owned = new ArrayList<>();
+        for (BulkJob job : jobs) {
+            if (owner.equals(job.getOwner())) owned.add(job);
+        }
+        return owned;
+    }
+
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    @Override
+    public void run() {
+        if (jobs.isEmpty()) return;
+        if (Scheduler.isFolia()) {
+            for (BulkJob job : jobs) {
+                if (finishIfDone(job) || job.partitions.get() > 0) continue;
+                Player owner = getOwner(job);
+                if (canRun(job, owner)) dispatch(job, owner); // Also restarts a job whose owner was offline for a while
+            }
+        } else {
+            long start = System.nanoTime();
+            long deadline = getDeadline();
+            int idle = 0; // Jobs in a row that could not make progress, such as while waiting on a chunk load
+            while (!jobs.isEmpty() && idle < jobs.size() && System.nanoTime() < deadline) {
+                if (next >= jobs.size()) next = 0;
+                BulkJob job = jobs.get(next);
+                if (finishIfDone(job)) {
+                    idle = 0;
+                    continue;
+                }
+                Player owner = getOwner(job);
+                idle = canRun(job, owner) && step(job, owner) ? 0 : idle + 1;
+                next++;
+            }
+            charge(start);
+        }
+        for (BulkJob job : jobs) updateBossBar(job);
+    }
+
+    // Processes the job's next chunk if it is loaded, otherwise starts loading it. Returns false if nothing was done
+    private boolean step(BulkJob job, Player owner) {
+        World world = Bukkit.getWorld(job.getWorld());
+        if (world == null) {
+            job.cancelled = true;
+            return true;
+        }
+        while (job.isChunkDone(job.cursor)) job.cursor++;
+
+        int index = job.cursor;
+        long key = job.getChunkKey(index);
+        int chunkX = Selection.chunkX(key);
+        int chunkZ = Selection.chunkZ(key);
+        Chunk chunk = null;
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            chunk = world.getChunkAt(chunkX, chunkZ);
+        } else if (job.pendingChunk == null) {
+            job.pendingChunk = PaperLib.getChunkAtAsync(world, chunkX, chunkZ, false);
+            return false;
+        } else if (!job.pendingChunk.isDone()) {
+            return false;
+        } else {
+            chunk = job.pendingChunk.getNow(null); // Null if it was never generated, its stands are gone
+        }
+        job.pendingChunk = null;
+
+        processChunk(job, owner, chunk, index);
+        return true;
+    }
+
+    /*
+     * Folia: splits what is left of the job by region section and hands each part to the region owning it, so regions
+     * work on their share in parallel. A section never spans two regions. Chunks that still turn out to belong to
+     * another region (regions merge and split over time) are passed on to that region on their own.
+     */
+    private void dispatch(BulkJob job, Player owner) {
+        World world = Bukkit.getWorld(job.getWorld());
+        if (world == null) {
+            job.cancelled = true;
+            return;
+        }
+
+        Map<Long, List<Integer>> sections = new LinkedHashMap<>();
+        for (int i = 0; i < job.getChunkCount(); i++) {
+            if (job.isChunkDone(i)) continue;
+            long key = job.getChunkKey(i);
+            long section = Selection.chunkKey(Selection.chunkX(key) >> Scheduler.REGION_SECTION_SHIFT, Selection.chunkZ(key) >> Scheduler.REGION_SECTION_SHIFT);
+            sections.computeIfAbsent(section, k -> new ArrayList<>()).add(i);
+        }
+        debug.log("Bulk edit " + job.getId() + " split into " + sections.size() + " region partitions");
+
+        job.partitions.addAndGet(sections.size());
+        for (List<Integer> chunks : sections.values()) {
+            runPartition(job, owner, world, chunks.stream().mapToInt(Integer::intValue).toArray(), 0);
+        }
+    }
+
+    // Works through a partition on its region until the tick budget is used, then carries on next tick
+    private void runPartition(BulkJob job, Player owner, World world, int[] chunks, int from) {
+        Scheduler.runAtLocation(plugin, getChunkCenter(world, job.getChunkKey(chunks[from])), () -> {
+            long start = System.nanoTime();
+            long deadline = getDeadline();
+            int i = from;
+            // Waits a tick straight away if other jobs on this thread already used the budget
+            while (i < chunks.length && System.nanoTime() < deadline && isRunning(job, owner)) {
+                runOwnedChunk(job, owner, world, chunks[i++]);
+            }
+            charge(start);
+
+            if (i < chunks.length && isRunning(job, owner)) {
+                runPartition(job, owner, world, chunks, i);
+            } else {
+                job.partitions.decrementAndGet(); // Anything left over is picked up again by the next dispatch
+            }
+        });
+    }
+
+    private void runOwnedChunk(BulkJob job, Player owner, World world, int index) {
+        long key = job.getChunkKey(index);
+        int chunkX = Selection.chunkX(key);
+        int chunkZ = Selection.chunkZ(key);
+        if (!Scheduler.isOwnedByCurrentRegion(world, chunkX, chunkZ)) {
+            job.partitions.incrementAndGet();
+            runPartition(job, owner, world, new int[]{index}, 0);
+            return;
+        }
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            processChunk(job, owner, world.getChunkAt(chunkX, chunkZ), index);
+            return;
+        }
+
+        job.partitions.incrementAndGet();
+        PaperLib.getChunkAtAsync(world, chunkX, chunkZ, false).whenComplete((chunk, error) ->
+                Scheduler.runAtLocation(plugin, getChunkCenter(world, key), () -> {
+                    try {
+                        if (isRunning(job, owner)) processChunk(job, owner, error == null ? chunk : null, index);
+                    } finally {
+                        job.partitions.decrementAndGet();
+                    }
+                }));
+    }
+
+    // A failure in one chunk is recorded and does not stop the rest of the job
+    private void processChunk(BulkJob job, Player owner, Chunk chunk, int index) {
+        try {
+            if (chunk != null) applyChunk(job, owner, chunk, index);
+        } catch (RuntimeException e) {
+            job.fail(index, e);
+        } finally {
+            job.markDone(index);
+        }
+    }
+
+    private Location getChunkCenter(World world, long key) {
+        return new Location(world, (Selection.chunkX(key) << 4) + 8, 0, (Selection.chunkZ(key) << 4) + 8);
+    }
+
+    private long getTickBudgetNanos() {
+        return (long) (plugin.bulkTickBudget * 1_000_000.0);
+    }
+
+    // When the work started now has to stop, given what this thread already used of the budget in this tick
+    private long getDeadline() {
+        long[] window = WINDOW.get();
+        long now = System.nanoTime();
+        if (now - window[0] >= TICK_NANOS) {
+            window[0] = now;
+            window[1] = 0;
+        }
+        return now + Math.max(0, getTickBudgetNanos() - window[1]);
+    }
+
+    private void charge(long start) {
+        WINDOW.get()[1] += System.nanoTime() - start;
+    }
+
+    // The owner if they are online, always null for service edits
+    private Player getOwner(BulkJob job) {
+        return job.isServiceEdit() ? null : Bukkit.getPlayer(job.getOwner());
+    }
+
+    private boolean canRun(BulkJob job, Player owner) {
+        return job.isServiceEdit() || owner != null;
+    }
+
+    private boolean isRunning(BulkJob job, Player owner) {
+        return !job.cancelled && (owner == null || owner.isOnline());
+    }
+
+    private void applyChunk(BulkJob job, Player owner, Chunk chunk, int index) {
+        if (job.isServiceEdit()) {
+            applyServiceEdit(job, chunk, index);
+            return;
+        }
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(owner.getUniqueId());
+        synchronized (job) {
+            if (job.historyGroup == 0) job.historyGroup = pe.getHistory().newGroup();
+        }
+        Set<UUID> stands = new HashSet<>(Arrays.asList(job.getStands(index)));
+        List<ArmorStand> editable = new ArrayList<>();
+        for (Entity entity : chunk.getEntities()) {
+            if (entity instanceof ArmorStand armorStand && stands.contains(armorStand.getUniqueId())
+                    && pe.canEditSelected(owner, armorStand)) {
+                editable.add(armorStand);
+            }
+        }
+        if (editable.isEmpty()) return;
+
+        if (!ListenedEvent.ARMOR_STAND_BATCH_MANIPULATED.isListened()) {
+            for (ArmorStand armorStand : editable) {
+                pe.editSelected(armorStand, job.getOperation(), job.historyGroup);
+                job.edited.incrementAndGet();
+            }
+            return;
+        }
+
+        List<StandDelta> deltas = new ArrayList<>(editable.size());
+        for (ArmorStand armorStand : editable) deltas.add(job.getOperation().describe(armorStand));
+
+        // One event for the whole chunk rather than one per stand
+        ArmorStandBatchManipulatedEvent event = new ArmorStandBatchManipulatedEvent(owner, job.getOperation().getMode(), deltas);
+        Bukkit.getPluginManager().callEvent(event);
+        if (event.isCancelled()) return;
+
+        Set<StandDelta> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(event.getDeltas());
+        for (StandDelta delta : deltas) {
+            if (!kept.contains(delta)) continue;
+            pe.editSelected(delta.getArmorStand(), job.getOperation(), job.historyGroup);
+            job.edited.incrementAndGet();
+        }
+    }
+
+    // The edit checks the actor itself and reports errors to the caller, as the service promises
+    private void applyServiceEdit(BulkJob job, Chunk chunk, int index) {
+        Set<UUID> stands = new HashSet<>(Arrays.asList(job.getStands(index)));
+        for (Entity entity : chunk.getEntities()) {
+            if (entity instanceof ArmorStand armorStand && stands.contains(armorStand.getUniqueId())
+                    && armorStand.isValid() && job.getEdit().test(armorStand)) {
+                job.edited.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean finishIfDone(BulkJob job) {
+        if ((!job.isDone() && !job.cancelled) || job.partitions.get() > 0) return false;
+        jobs.remove(job);
+        if (job.bossBar != null) job.bossBar.removeAll();
+        debug.log("Bulk edit " + job.getId() + (job.cancelled ? " cancelled" : " finished") + " after editing " + job.getEdited() + " of " + job.getTotal() + " ArmorStands");
+        if (!job.failures.isEmpty()) {
+            plugin.getLogger().warning("Bulk edit " + job.getId() + " failed in " + job.getFailureCount() + " chunk(s), first: " + job.failures.peek());
+        }
+
+        Player owner = getOwner(job);
+        if (owner != null) {
+            PlayerEditor pe = plugin.editorManager.getPlayerEditor(owner.getUniqueId());
+            if (!job.cancelled && !job.quiet) pe.sendFeedback("selectapplied", String.valueOf(job.getEdited()));
+            if (pe.getHistory().wasSkipped(job.historyGroup)) pe.sendMessage("historyskipped", "warn", String.valueOf(plugin.undoHistoryMaxEntries));
+        }
+        if (!job.isServiceEdit()) dirty.set(true);
+        job.finished.complete(null);
+        return true;
+    }
+
+    private void updateBossBar(BulkJob job) {
+        Player owner = getOwner(job);
+        if (!plugin.bulkBossBar || owner == null) {
+            if (job.bossBar != null) {
+                job.bossBar.removeAll();
+                job.bossBar = null;
+            }
+            return;
+        }
+
+        String title = plugin.getLang().getMessage("bulkprogress", "info", job.getProcessed() + "/" + job.getTotal());
+        if (job.bossBar == null) {
+            job.bossBar = Bukkit.createBossBar(title, BarColor.YELLOW, BarStyle.SOLID);
+            job.bossBar.addPlayer(owner);
+        } else {
+            job.bossBar.setTitle(title);
+        }
+        job.bossBar.setProgress(Math.min(1.0, (double) job.getProcessed() / Math.max(1, job.getTotal())));
+    }
+
+    /**
+     * Saves the unfinished jobs and takes their boss bars away from the players. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        save();
+        for (BulkJob job : jobs) {
+            if (job.bossBar == null) continue;
+            job.bossBar.removeAll();
+            job.bossBar = null;
+        }
+    }
+
+    /**
+     * Writes every unfinished job to bulkjobs.yml, or removes the file when there are none.
+     */
+    public synchronized void save() {
+        YamlConfiguration config = new YamlConfiguration();
+        int saved = 0;
+        for (BulkJob job : jobs) {
+            if (job.cancelled || job.isDone() || job.isServiceEdit()) continue;
+            job.save(config.createSection("jobs." + job.getId()));
+            saved++;
+        }
+
+        if (saved == 0) {
+            if (file.exists() && !file.delete()) plugin.getLogger().warning("Could not delete " + FILE_NAME);
+            return;
+        }
+        try {
+            config.save(file);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not save unfinished bulk edits to " + FILE_NAME + ": " + e.getMessage());
+        }
+    }
+
+    // Picks up the jobs that were still running when the server stopped
+    public void load() {
+        if (!file.exists()) return;
+        ConfigurationSection section = YamlConfiguration.loadConfiguration(file).getConfigurationSection("jobs");
+        if (section == null) return;
+        for (String id : section.getKeys(false)) {
+            BulkJob job = BulkJob.load(plugin, id, section.getConfigurationSection(id));
+            if (job == null) {
+                plugin.getLogger().warning("Could not resume bulk edit " + id + " from " + FILE_NAME);
+                continue;
+            }
+            jobs.add(job);
+        }
+        debug.log("Resumed " + jobs.size() + " bulk edits from " + FILE_NAME);
+    }
+}
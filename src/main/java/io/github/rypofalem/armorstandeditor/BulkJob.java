@@ -0,0 +1,233 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import org.bukkit.Chunk;
+import org.bukkit.boss.BossBar;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Predicate;
+
+/**
+ * A StandOperation to apply to a list of stands, with the stands sorted by chunk so each chunk is visited once.
+ * The BulkExecutor works through it one chunk at a time and saves whatever is left when the server stops.
+ * <p>
+ * Edits made for other plugins through the ArmorStandEditService are jobs too. They have no owner and no operation,
+ * just an edit returning whether it changed the stand, and are not saved as the caller is still waiting on them.
+ * <p>
+ * On Folia several regions work on one job at once, so progress is kept in atomics and failures in a lock-free queue.
+ */
+public class BulkJob {
+
+    private final UUID id;
+    private final UUID owner;
+    private final UUID world;
+    private final StandOperation operation; // Null for service edits
+    private final Predicate<ArmorStand> edit; // Only for service edits
+    private final long[] chunkKeys;
+    private final UUID[][] stands;
+    private final int total;
+
+    // Progress, updated by whichever thread processed the chunk
+    private final AtomicIntegerArray chunkDone;
+    private final AtomicInteger completed = new AtomicInteger(); // Chunks done
+    final AtomicInteger processed = new AtomicInteger();         // Stands looked at, edited or not
+    final AtomicInteger edited = new AtomicInteger();
+    final AtomicInteger partitions = new AtomicInteger();        // Folia: partition tasks not finished yet
+    final Queue<String> failures = new ConcurrentLinkedQueue<>();
+    volatile boolean cancelled;
+    final CompletableFuture<Void> finished = new CompletableFuture<>(); // Also when cancelled. Not kept across restarts
+    volatile boolean quiet; // No message to the owner when done, for jobs started by a batch file
+
+    // Only touched by the executor's own tick
+    int cursor; // Next chunk to look at, when worked through in order
+    CompletableFuture<Chunk> pendingChunk;
+    BossBar bossBar;
+    int historyGroup;
+
+    public BulkJob(UUID owner, UUID world, StandOperation operation, Map<Long, UUID[]> chunks) {
+        this(UUID.randomUUID(), owner, world, operation, null, chunks, 0, 0);
+    }
+
+    // A service edit, see the class description
+    BulkJob(UUID world, Predicate<ArmorStand> edit, Map<Long, UUID[]> chunks) {
+        this(UUID.randomUUID(), null, world, null, edit, chunks, 0, 0);
+        quiet = true;
+    }
+
+    private BulkJob(UUID id, UUID owner, UUID world, StandOperation operation, Predicate<ArmorStand> edit, Map<Long, UUID[]> chunks,
+                    int done, int doneEdited) {
+        this.id = id;
+        this.owner = owner;
+        this.world = world;
+        this.operation = operation;
+        this.edit = edit;
+
+        // Neighbouring chunks end up next to each other, so loaded areas are worked through in one go
+        Long[] keys = chunks.keySet().toArray(new Long[0]);
+        Arrays.sort(keys, Comparator.<Long>comparingInt(Selection::chunkX).thenComparingInt(Selection::chunkZ));
+        chunkKeys = new long[keys.length];
+        stands = new UUID[keys.length][];
+        int count = done;
+        for (int i = 0; i < keys.length; i++) {
+            chunkKeys[i] = keys[i];
+            stands[i] = chunks.get(keys[i]);
+            count += stands[i].length;
+        }
+        total = count;
+        chunkDone = new AtomicIntegerArray(keys.length);
+        processed.set(done);
+        edited.set(doneEdited);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    // Null for service edits
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public UUID getWorld() {
+        return world;
+    }
+
+    public StandOperation getOperation() {
+        return operation;
+    }
+
+    Predicate<ArmorStand> getEdit() {
+        return edit;
+    }
+
+    boolean isServiceEdit() {
+        return operation == null;
+    }
+
+    public int getChunkCount() {
+        return chunkKeys.length;
+    }
+
+    public long getChunkKey(int index) {
+        return chunkKeys[index];
+    }
+
+    public UUID[] getStands(int index) {
+        return stands[index];
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getProcessed() {
+        return processed.get();
+    }
+
+    public int getEdited() {
+        return edited.get();
+    }
+
+    public boolean isChunkDone(int index) {
+        return chunkDone.get(index) != 0;
+    }
+
+    // Counts a chunk as done, once, whether or not anything in it could be edited
+    void markDone(int index) {
+        if (!chunkDone.compareAndSet(index, 0, 1)) return;
+        processed.addAndGet(stands[index].length);
+        completed.incrementAndGet();
+    }
+
+    void fail(int index, Throwable error) {
+        failures.add(Selection.chunkX(chunkKeys[index]) + "," + Selection.chunkZ(chunkKeys[index]) + ": " + error);
+    }
+
+    public boolean isDone() {
+        return completed.get() >= chunkKeys.length;
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Only the chunks not processed yet are written
+    public void save(ConfigurationSection section) {
+        section.set("owner", owner.toString());
+        section.set("world", world.toString());
+        section.set("processed", processed.get());
+        section.set("edited", edited.get());
+        operation.save(section.createSection("operation"));
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < chunkKeys.length; i++) {
+            if (isChunkDone(i)) continue;
+            StringBuilder line = new StringBuilder();
+            line.append(Selection.chunkX(chunkKeys[i])).append(',').append(Selection.chunkZ(chunkKeys[i])).append(':');
+            for (int k = 0; k < stands[i].length; k++) {
+                if (k > 0) line.append(',');
+                line.append(stands[i][k]);
+            }
+            chunks.add(line.toString());
+        }
+        section.set("chunks", chunks);
+    }
+
+    /**
+     * Reads a job written by save, or returns null if it can not be read.
+     */
+    public static BulkJob load(ArmorStandEditorPlugin plugin, String id, ConfigurationSection section) {
+        ConfigurationSection operationSection = section.getConfigurationSection("operation");
+        StandOperation operation = operationSection == null ? null : StandOperation.load(plugin, operationSection);
+        if (operation == null) return null;
+        try {
+            Map<Long, UUID[]> chunks = new LinkedHashMap<>();
+            for (String line : section.getStringList("chunks")) {
+                String[] parts = line.split(":", 2);
+                String[] coords = parts[0].split(",");
+                String[] ids = parts[1].split(",");
+                UUID[] uuids = new UUID[ids.length];
+                for (int i = 0; i < ids.length; i++) uuids[i] = UUID.fromString(ids[i]);
+                chunks.put(Selection.chunkKey(Integer.parseInt(coords[0]), Integer.parseInt(coords[1])), uuids);
+            }
+            return new BulkJob(UUID.fromString(id), UUID.fromString(section.getString("owner")), UUID.fromString(section.getString("world")),
+                    operation, null, chunks, section.getInt("processed"), section.getInt("edited"));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | NullPointerException e) {
+            return null;
+        }
+    }
+}
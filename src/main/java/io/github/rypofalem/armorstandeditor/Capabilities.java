@@ -0,0 +1,95 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import org.bukkit.Location;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.entity.Entity;
+
+/**
+ * What the running server supports, probed once when the class is first touched (during onEnable).
+ * Everything is a static final boolean so the checks cost nothing on the edit paths.
+ * <p>
+ * Integrations may read these to find out which features ArmorStandEditor has enabled on this server.
+ */
+public final class Capabilities {
+
+    /** Spigot (or a fork of it) */
+    public static final boolean SPIGOT = classExists("org.spigotmc.CustomTimingsHandler");
+
+    /** Paper (or a fork of it). PaperConfig is gone since 1.19, its configuration package took over */
+    public static final boolean PAPER = classExists("io.papermc.paper.configuration.Configuration")
+            || classExists("com.destroystokyo.paper.PaperConfig");
+
+    /** Folia's regionised threading */
+    public static final boolean FOLIA = classExists("io.papermc.paper.threadedregions.ThreadedRegionizer");
+
+    /** The generic scale attribute, used for the size menu (1.21.3 and up) */
+    public static final boolean SCALE_ATTRIBUTE = fieldExists(Attribute.class, "SCALE");
+
+    /** Per-entity schedulers (Paper/Folia) */
+    public static final boolean ENTITY_SCHEDULER = methodExists(Entity.class, "getScheduler");
+
+    /** Entity#teleportAsync (Paper/Folia) */
+    public static final boolean ASYNC_TELEPORT = methodExists(Entity.class, "teleportAsync", Location.class);
+
+    /** Entities hidden from everyone but chosen players, used for preview stands (1.19.3 and up) */
+    public static final boolean PER_PLAYER_VISIBILITY = methodExists(Entity.class, "setVisibleByDefault", boolean.class);
+
+    /** Paper's Brigadier command API, so /ase can be completed and checked by the client (1.20.6 and up) */
+    public static final boolean BRIGADIER_COMMANDS = classExists("io.papermc.paper.command.brigadier.Commands");
+
+    private Capabilities() {
+    }
+
+    private static boolean classExists(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static boolean fieldExists(Class<?> clazz, String name) {
+        try {
+            clazz.getField(name);
+            return true;
+        } catch (NoSuchFieldException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static boolean methodExists(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            clazz.getMethod(name, parameterTypes);
+            return true;
+        } catch (NoSuchMethodException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static String describe() {
+        return "Spigot: " + SPIGOT + ", Paper: " + PAPER + ", Folia: " + FOLIA
+                + ", Scale Attribute: " + SCALE_ATTRIBUTE + ", Entity Scheduler: " + ENTITY_SCHEDULER
+                + ", Async Teleport: " + ASYNC_TELEPORT
+                + ", Per-Player Visibility: " + PER_PLAYER_VISIBILITY + ", Brigadier Commands: " + BRIGADIER_COMMANDS;
+    }
+}
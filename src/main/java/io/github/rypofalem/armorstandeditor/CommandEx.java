@@ -22,14 +22,17 @@ package io.github.rypofalem.armorstandeditor;
 import com.jeff_media.updatechecker.UpdateCheckSource;
 import com.jeff_media.updatechecker.UpdateChecker;
 
+import io.github.rypofalem.armorstandeditor.animation.AnimationClip;
 import io.github.rypofalem.armorstandeditor.modes.AdjustmentMode;
 import io.github.rypofalem.armorstandeditor.modes.Axis;
 import io.github.rypofalem.armorstandeditor.modes.EditMode;
 
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Sound;
+import org.bukkit.World;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.command.*;
 import org.bukkit.entity.ArmorStand;
@@ -39,11 +42,13 @@ import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.inventory.meta.SkullMeta;
+import org.bukkit.util.BoundingBox;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CommandEx implements CommandExecutor, TabCompleter {
     ArmorStandEditorPlugin plugin;
@@ -58,6 +63,14 @@ public class CommandEx implements CommandExecutor, TabCompleter {
     final String GIVECUSTOMMODEL = ChatColor.YELLOW + "/ase give";
     final String GIVEPLAYERHEAD = ChatColor.YELLOW + "/ase playerhead";
     final String GETARMORSTATS = ChatColor.YELLOW + "/ase stats";
+    final String PERF = ChatColor.YELLOW + "/ase perf";
+    final String UNDO = ChatColor.YELLOW + "/ase undo [steps] or /ase redo [steps]";
+    final String SELECT = ChatColor.YELLOW + "/ase select <radius <blocks>|pos1|pos2|cuboid|clear|list>";
+    final String BULK = ChatColor.YELLOW + "/ase bulk [cancel]";
+    final String PREVIEW = ChatColor.YELLOW + "/ase preview [commit|cancel]";
+    final String ANIM = ChatColor.YELLOW + "/ase anim <record <name>|key [ticks]|save [returnTicks]|cancel|play <name>|stop|list|delete <name>>";
+    final String BATCH = ChatColor.YELLOW + "/ase batch <run <file> [dryrun]|cancel>";
+    final String HOTBAR = ChatColor.YELLOW + "/ase hotbar";
     private Debug debug;
 
     public CommandEx(ArmorStandEditorPlugin armorStandEditorPlugin) {
@@ -74,10 +87,12 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                 sender.sendMessage(VERSION);
                 sender.sendMessage(HELP);
                 sender.sendMessage(RELOAD);
+                sender.sendMessage(PERF);
                 return true;
             } else {
                 switch (args[0].toLowerCase()) {
                     case "reload" -> commandReloadConsole(sender);
+                    case "perf" -> commandPerf(sender);
                     case "help", "?" -> commandHelpConsole(sender);
                     case "version" -> commandVersionConsole(sender);
                     default -> {
@@ -109,6 +124,14 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                 player.sendMessage(GIVECUSTOMMODEL);
                 player.sendMessage(GIVEPLAYERHEAD);
                 player.sendMessage(GETARMORSTATS);
+                player.sendMessage(PERF);
+                player.sendMessage(UNDO);
+                player.sendMessage(SELECT);
+                player.sendMessage(BULK);
+                player.sendMessage(PREVIEW);
+                player.sendMessage(ANIM);
+                player.sendMessage(BATCH);
+                player.sendMessage(HOTBAR);
                 return true;
             }
             switch (args[0].toLowerCase()) {
@@ -123,6 +146,17 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                 case "playerhead" -> commandGivePlayerHead(player);
                 case "reload" -> commandReload(player);
                 case "stats" -> commandStats(player);
+                case "perf" -> {
+                    if (checkPermission(player, "perf", true)) commandPerf(player);
+                }
+                case "undo" -> commandUndo(player, args, true);
+                case "redo" -> commandUndo(player, args, false);
+                case "select" -> commandSelect(player, args);
+                case "bulk" -> commandBulk(player, args);
+                case "preview" -> commandPreview(player, args);
+                case "anim" -> commandAnim(player, args);
+                case "batch" -> commandBatch(player, args);
+                case "hotbar" -> plugin.editorManager.getPlayerEditor(player.getUniqueId()).toggleHotbar();
                 default -> {
                     sender.sendMessage(LISTMODE);
                     sender.sendMessage(LISTAXIS);
@@ -135,6 +169,14 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                     sender.sendMessage(GIVECUSTOMMODEL);
                     sender.sendMessage(GIVEPLAYERHEAD);
                     sender.sendMessage(GETARMORSTATS);
+                    sender.sendMessage(PERF);
+                    sender.sendMessage(UNDO);
+                    sender.sendMessage(SELECT);
+                    sender.sendMessage(BULK);
+                    sender.sendMessage(PREVIEW);
+                    sender.sendMessage(ANIM);
+                    sender.sendMessage(BATCH);
+                    sender.sendMessage(HOTBAR);
                 }
             }
             return true;
@@ -406,7 +448,7 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                     leftLegZ = Math.toDegrees(leftLegZ);
                     leftLegZ = Math.rint(leftLegZ);
 
-                    if (plugin.getNmsVersion().compareTo("1.21.4") >= 0 || plugin.getNmsVersion().compareTo("v1_21_R3") >= 0) {
+                    if (Capabilities.SCALE_ATTRIBUTE) {
                         sizeAttribute = Objects.requireNonNull(as.getAttribute(Attribute.SCALE)).getBaseValue();
                     } else {
                         sizeAttribute = 0;
@@ -444,7 +486,7 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                     player.sendMessage(ChatColor.YELLOW + "Is Vulnerable: " + ChatColor.AQUA + isVulnerable + ". "
                             + ChatColor.YELLOW + "Affected by Gravity: " + ChatColor.AQUA + hasGravity);
 
-                    if (plugin.getNmsVersion().compareTo("1.21.4") >= 0 || plugin.getNmsVersion().compareTo("v1_21_R3") >= 0) {
+                    if (Capabilities.SCALE_ATTRIBUTE) {
                         player.sendMessage(ChatColor.YELLOW + "Size: " + ChatColor.AQUA + sizeAttribute + "/" + plugin.getMaxScaleValue() + ". "
                                 + ChatColor.YELLOW + "Is Glowing: " + ChatColor.AQUA + isGlowing + ". "
                                 + ChatColor.YELLOW + "Is Locked: " + ChatColor.AQUA + isLocked + ". "
@@ -464,6 +506,310 @@ public class CommandEx implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void commandUndo(Player player, String[] args, boolean undo) {
+        if (!checkPermission(player, "undo", true)) return;
+
+        int steps = 1;
+        if (args.length > 1) {
+            try {
+                steps = Math.max(1, Integer.parseInt(args[1]));
+            } catch (NumberFormatException e) {
+                player.sendMessage(UNDO);
+                return;
+            }
+        }
+
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        debug.log("Player '" + player.getDisplayName() + "' requested " + (undo ? "undo" : "redo") + " of " + steps + " step(s)");
+        if (undo) {
+            pe.undo(steps);
+        } else {
+            pe.redo(steps);
+        }
+    }
+
+    private void commandSelect(Player player, String[] args) {
+        if (!checkPermission(player, "select", true)) return;
+        if (args.length <= 1) {
+            player.sendMessage(SELECT);
+            return;
+        }
+
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        Selection selection = pe.getSelection();
+        switch (args[1].toLowerCase()) {
+            case "radius" -> {
+                double radius;
+                try {
+                    radius = Math.min(plugin.selectionMaxRadius, Double.parseDouble(args.length > 2 ? args[2] : ""));
+                } catch (NumberFormatException e) {
+                    player.sendMessage(SELECT);
+                    return;
+                }
+                List<ArmorStand> stands = new ArrayList<>();
+                for (Entity entity : player.getNearbyEntities(radius, radius, radius)) {
+                    if (entity instanceof ArmorStand stand && stand.getLocation().distanceSquared(player.getLocation()) <= radius * radius) {
+                        stands.add(stand);
+                    }
+                }
+                int added = pe.select(stands);
+                debug.log("Player '" + player.getDisplayName() + "' selected " + added + " ArmorStands within " + radius + " blocks");
+                pe.sendMessage("selected", String.valueOf(selection.size()));
+            }
+            case "pos1", "pos2" -> {
+                Location pos = player.getLocation().getBlock().getLocation();
+                if (args[1].equalsIgnoreCase("pos1")) {
+                    selection.setPos1(pos);
+                } else {
+                    selection.setPos2(pos);
+                }
+                pe.sendMessage("selectpos", pos.getBlockX() + ", " + pos.getBlockY() + ", " + pos.getBlockZ());
+            }
+            case "cuboid" -> selectCuboid(player, pe);
+            case "clear" -> {
+                selection.clear();
+                pe.sendMessage("selectcleared", null);
+            }
+            case "list" -> pe.sendMessage("selected", String.valueOf(selection.size()));
+            default -> player.sendMessage(SELECT);
+        }
+    }
+
+    private void commandBulk(Player player, String[] args) {
+        if (!checkPermission(player, "select", true)) return;
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("cancel")) {
+            int cancelled = plugin.getBulkExecutor().cancel(player.getUniqueId());
+            if (cancelled == 0) {
+                pe.sendMessage("bulknone", "warn", null);
+            } else {
+                debug.log("Player '" + player.getDisplayName() + "' cancelled " + cancelled + " bulk edits");
+                pe.sendMessage("bulkcancelled", String.valueOf(cancelled));
+            }
+            return;
+        }
+
+        List<BulkJob> jobs = plugin.getBulkExecutor().getJobs(player.getUniqueId());
+        if (jobs.isEmpty()) {
+            pe.sendMessage("bulknone", "warn", null);
+            return;
+        }
+        for (BulkJob job : jobs) {
+            player.sendMessage(ChatColor.YELLOW + "Bulk Edit: " + ChatColor.AQUA + job.getOperation().getMode() + ". "
+                    + ChatColor.YELLOW + "Progress: " + ChatColor.AQUA + job.getProcessed() + "/" + job.getTotal() + ". "
+                    + ChatColor.YELLOW + "Edited: " + ChatColor.AQUA + job.getEdited() + ". "
+                    + ChatColor.YELLOW + "Failed Chunks: " + ChatColor.AQUA + job.getFailureCount());
+        }
+    }
+
+    private void commandPreview(Player player, String[] args) {
+        if (!checkPermission(player, "preview", true)) return;
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        if (!Capabilities.PER_PLAYER_VISIBILITY) {
+            pe.sendMessage("previewunsupported", "warn", null);
+            return;
+        }
+
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+        switch (action) {
+            case "" -> pe.startPreview();
+            case "commit" -> pe.commitPreview();
+            case "cancel" -> pe.cancelPreview();
+            default -> player.sendMessage(PREVIEW);
+        }
+        debug.log("Player '" + player.getDisplayName() + "' used preview " + (action.isEmpty() ? "start" : action));
+    }
+
+    private void commandAnim(Player player, String[] args) {
+        if (!checkPermission(player, "animate", true)) return;
+        if (args.length <= 1) {
+            player.sendMessage(ANIM);
+            return;
+        }
+
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        AnimationManager animations = plugin.getAnimationManager();
+        String action = args[1].toLowerCase();
+        switch (action) {
+            case "record", "play" -> {
+                if (args.length <= 2) {
+                    player.sendMessage(ANIM);
+                    return;
+                }
+                if (action.equals("record") && !AnimationManager.isValidName(args[2])) {
+                    pe.sendMessage("animbadname", "warn", args[2]);
+                    return;
+                }
+                AnimationClip clip = animations.getClip(args[2]);
+                if (action.equals("play") && clip == null) {
+                    pe.sendMessage("animunknown", "warn", args[2]);
+                    return;
+                }
+                ArmorStand armorStand = plugin.editorManager.getCommandTarget(player);
+                if (armorStand == null) {
+                    pe.sendMessage("animnotarget", "warn", null);
+                    return;
+                }
+                if (!plugin.editorManager.canEdit(player, armorStand)) {
+                    pe.sendMessage("cantedit", "warn", null);
+                    return;
+                }
+                if (action.equals("record")) {
+                    animations.record(player, armorStand, args[2]);
+                } else {
+                    animations.play(armorStand, clip);
+                    debug.log("Player '" + player.getDisplayName() + "' started animation '" + clip.getName() + "' on ArmorStand " + armorStand.getUniqueId());
+                    pe.sendMessage("animplaying", clip.getName());
+                }
+            }
+            case "key", "save" -> {
+                int ticks = action.equals("key") ? plugin.animationKeyInterval : 0;
+                if (args.length > 2) {
+                    try {
+                        ticks = Integer.parseInt(args[2]);
+                    } catch (NumberFormatException e) {
+                        player.sendMessage(ANIM);
+                        return;
+                    }
+                }
+                if (action.equals("key")) {
+                    animations.addKeyframe(player, Math.max(1, ticks));
+                } else {
+                    animations.saveRecording(player, Math.max(0, ticks));
+                }
+            }
+            case "cancel" -> {
+                if (animations.cancelRecording(player.getUniqueId())) {
+                    pe.sendMessage("animcancelled", null);
+                } else {
+                    pe.sendMessage("animnorecording", "warn", null);
+                }
+            }
+            case "stop" -> {
+                ArmorStand armorStand = plugin.editorManager.getCommandTarget(player);
+                if (armorStand == null) {
+                    pe.sendMessage("animnotarget", "warn", null);
+                    return;
+                }
+                if (!plugin.editorManager.canEdit(player, armorStand)) {
+                    pe.sendMessage("cantedit", "warn", null);
+                    return;
+                }
+                Scheduler.executeAtEntity(plugin, armorStand, () -> {
+                    if (animations.stop(armorStand)) {
+                        debug.log("Player '" + player.getDisplayName() + "' stopped the animation of ArmorStand " + armorStand.getUniqueId());
+                        pe.sendMessage("animstopped", null);
+                    } else {
+                        pe.sendMessage("animnotanimated", "warn", null);
+                    }
+                }, null);
+            }
+            case "list" -> pe.sendMessage("animlist", String.join(", ", animations.getClipNames()));
+            case "delete" -> {
+                if (args.length > 2 && animations.deleteClip(args[2])) {
+                    debug.log("Player '" + player.getDisplayName() + "' deleted animation '" + args[2] + "'");
+                    pe.sendMessage("animdeleted", args[2]);
+                } else {
+                    pe.sendMessage("animunknown", "warn", args.length > 2 ? args[2] : "");
+                }
+            }
+            default -> player.sendMessage(ANIM);
+        }
+    }
+
+    private void commandBatch(Player player, String[] args) {
+        if (!checkPermission(player, "batch", true)) return;
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(player.getUniqueId());
+        if (args.length > 2 && args[1].equalsIgnoreCase("run")) {
+            pe.runBatch(args[2], args.length > 3 && args[3].equalsIgnoreCase("dryrun"));
+        } else if (args.length > 1 && args[1].equalsIgnoreCase("cancel")) {
+            pe.cancelBatch();
+        } else {
+            player.sendMessage(BATCH);
+        }
+    }
+
+    // Collects the stands inside pos1 and pos2 chunk by chunk, each chunk on the thread that owns it
+    private void selectCuboid(Player player, PlayerEditor pe) {
+        Location pos1 = pe.getSelection().getPos1();
+        Location pos2 = pe.getSelection().getPos2();
+        if (pos1 == null || pos2 == null || pos1.getWorld() != pos2.getWorld()) {
+            pe.sendMessage("selectnopos", "warn", null);
+            return;
+        }
+        BoundingBox box = BoundingBox.of(pos1.getBlock(), pos2.getBlock());
+        double maxSide = plugin.selectionMaxRadius * 2 + 1;
+        if (box.getWidthX() > maxSide || box.getHeight() > maxSide || box.getWidthZ() > maxSide) {
+            pe.sendMessage("selecttoolarge", "warn", String.valueOf((int) maxSide));
+            return;
+        }
+
+        World world = pos1.getWorld();
+        int minX = box.getMin().getBlockX() >> 4;
+        int maxX = (box.getMax().getBlockX() - 1) >> 4;
+        int minZ = box.getMin().getBlockZ() >> 4;
+        int maxZ = (box.getMax().getBlockZ() - 1) >> 4;
+        AtomicInteger remaining = new AtomicInteger((maxX - minX + 1) * (maxZ - minZ + 1));
+        for (int chunkX = minX; chunkX <= maxX; chunkX++) {
+            for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+                int x = chunkX;
+                int z = chunkZ;
+                Scheduler.runAtLocation(plugin, new Location(world, (x << 4) + 8, 0, (z << 4) + 8), () -> {
+                    if (world.isChunkLoaded(x, z)) {
+                        List<ArmorStand> stands = new ArrayList<>();
+                        for (Entity entity : world.getChunkAt(x, z).getEntities()) {
+                            if (entity instanceof ArmorStand stand && box.contains(stand.getLocation().toVector())) stands.add(stand);
+                        }
+                        pe.select(stands);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        debug.log("Player '" + player.getDisplayName() + "' selected a cuboid of " + box.getWidthX() + "x" + box.getHeight() + "x" + box.getWidthZ());
+                        pe.sendMessage("selected", String.valueOf(pe.getSelection().size()));
+                    }
+                });
+            }
+        }
+    }
+
+    private void commandPerf(CommandSender sender) {
+        EditGovernor governor = plugin.getGovernor();
+        sender.sendMessage(ChatColor.YELLOW + "----------- ArmorStandEditor Performance -----------");
+        if (Scheduler.isFolia()) {
+            sender.sendMessage(ChatColor.YELLOW + "Edit Governor: " + ChatColor.AQUA + "not used on Folia");
+        } else {
+            sender.sendMessage(ChatColor.YELLOW + "Edit Governor: " + ChatColor.AQUA + (plugin.governorEnabled ? "enabled" : "disabled") + ". "
+                    + ChatColor.YELLOW + "MSPT: " + ChatColor.AQUA + String.format("%.2f", governor.getMspt()) + ". "
+                    + ChatColor.YELLOW + "Over Budget: " + ChatColor.AQUA + governor.isOverloaded());
+        }
+        if (!plugin.getLoadShedder().isActive()) {
+            sender.sendMessage(ChatColor.YELLOW + "Load Shedding: " + ChatColor.AQUA + (Scheduler.isFolia() ? "not used on Folia" : "needs Paper's MSPT"));
+        } else {
+            sender.sendMessage(ChatColor.YELLOW + "Load Shedding: " + ChatColor.AQUA + plugin.getLoadShedder().getLevel()
+                    + " (" + plugin.getLoadShedder().getLevel().ordinal() + "/" + (LoadShedder.Level.values().length - 1) + ")");
+        }
+        sender.sendMessage(ChatColor.YELLOW + "Queued Edits: " + ChatColor.AQUA + governor.getQueueDepth()
+                + " (" + governor.getQueuedPlayers() + " players, peak " + governor.getPeakQueueDepth() + ")");
+        sender.sendMessage(ChatColor.YELLOW + "Edits Run: " + ChatColor.AQUA + governor.getExecutedCount() + ". "
+                + ChatColor.YELLOW + "Deferred: " + ChatColor.AQUA + governor.getDeferredCount() + ". "
+                + ChatColor.YELLOW + "Dropped: " + ChatColor.AQUA + governor.getDroppedCount());
+        sender.sendMessage(ChatColor.YELLOW + "Coalescing: " + ChatColor.AQUA + (plugin.coalesceEdits ? "enabled" : "disabled") + ". "
+                + ChatColor.YELLOW + "Edits Merged: " + ChatColor.AQUA + plugin.getCoalescer().getCoalescedCount()
+                + "/" + plugin.getCoalescer().getEditCount());
+        sender.sendMessage(ChatColor.YELLOW + "Unchanged Writes Skipped: " + ChatColor.AQUA + DiffApplier.getSkippedCount()
+                + "/" + DiffApplier.getCheckedCount());
+        sender.sendMessage(ChatColor.YELLOW + "Drags Active: " + ChatColor.AQUA + plugin.getDragController().getActiveCount() + ". "
+                + ChatColor.YELLOW + "Drag Updates Sent: " + ChatColor.AQUA + plugin.getDragController().getUpdateCount() + ". "
+                + ChatColor.YELLOW + "Skipped: " + ChatColor.AQUA + plugin.getDragController().getSkippedCount());
+        sender.sendMessage(ChatColor.YELLOW + "Animated Stands: " + ChatColor.AQUA + plugin.getAnimationManager().getAnimatedCount() + ". "
+                + ChatColor.YELLOW + "Animations: " + ChatColor.AQUA + plugin.getAnimationManager().getClipCount() + ". "
+                + ChatColor.YELLOW + "Frame Updates: " + ChatColor.AQUA + plugin.getAnimationManager().getFrameUpdateCount() + ". "
+                + ChatColor.YELLOW + "Avoided By Distance: " + ChatColor.AQUA + plugin.getAnimationManager().getAvoidedUpdateCount() + ". "
+                + ChatColor.YELLOW + "Off-heap State: " + ChatColor.AQUA + plugin.getAnimationManager().getStoreBytes() / 1024 + " KB");
+        sender.sendMessage(ChatColor.YELLOW + "Bulk Edits Running: " + ChatColor.AQUA + plugin.getBulkExecutor().getJobCount() + ". "
+                + ChatColor.YELLOW + "Budget: " + ChatColor.AQUA + plugin.bulkTickBudget + (Scheduler.isFolia() ? "ms/region tick" : "ms/tick"));
+        sender.sendMessage(ChatColor.YELLOW + "----------------------------------------------");
+    }
 
     private boolean checkPermission(Player player, String permName, boolean sendMessageOnInvalidation) {
         if (permName.equalsIgnoreCase("paste")) {
@@ -503,11 +849,15 @@ public class CommandEx implements CommandExecutor, TabCompleter {
         return checkPermission(player, "stats", false);
     }
 
+    private boolean getPermissionPerf(Player player) {
+        return checkPermission(player, "perf", false);
+    }
+
     //REFACTOR COMPLETION
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (!(sender instanceof Player player)) return Collections.emptyList();
         List<String> argList = new ArrayList<>();
-        Player player = (Player) sender;
 
         if (isCommandValid(command.getName())) {
 
@@ -516,6 +866,7 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                 argList.add("axis");
                 argList.add("adj");
                 argList.add("slot");
+                argList.add("hotbar");
                 argList.add("help");
                 argList.add("?");
 
@@ -536,25 +887,85 @@ public class CommandEx implements CommandExecutor, TabCompleter {
                 if (getPermissionStats(player)) {
                     argList.add("stats");
                 }
+
+                if (getPermissionPerf(player)) {
+                    argList.add("perf");
+                }
+
+                if (checkPermission(player, "undo", false)) {
+                    argList.add("undo");
+                    argList.add("redo");
+                }
+
+                if (checkPermission(player, "select", false)) {
+                    argList.add("select");
+                    argList.add("bulk");
+                }
+
+                if (checkPermission(player, "preview", false)) {
+                    argList.add("preview");
+                }
+
+                if (checkPermission(player, "animate", false)) {
+                    argList.add("anim");
+                }
+
+                if (checkPermission(player, "batch", false)) {
+                    argList.add("batch");
+                }
+            }
+
+            if (args.length == 2 && args[0].equalsIgnoreCase("select")) {
+                argList.addAll(SELECT_OPTIONS);
+            }
+
+            if (args.length == 2 && args[0].equalsIgnoreCase("bulk")) {
+                argList.add("cancel");
+            }
+
+            if (args.length == 2 && args[0].equalsIgnoreCase("anim")) {
+                argList.addAll(ANIM_OPTIONS);
+            }
+
+            if (args.length == 3 && args[0].equalsIgnoreCase("anim") && (args[1].equalsIgnoreCase("play") || args[1].equalsIgnoreCase("delete"))) {
+                argList.addAll(plugin.getAnimationManager().getClipNames());
+            }
+
+            if (args.length == 2 && args[0].equalsIgnoreCase("batch")) {
+                argList.addAll(BATCH_OPTIONS);
+            }
+
+            if (args.length == 3 && args[0].equalsIgnoreCase("batch") && args[1].equalsIgnoreCase("run")) {
+                argList.addAll(BatchRun.getFileNames(plugin));
+            }
+
+            if (args.length == 4 && args[0].equalsIgnoreCase("batch") && args[1].equalsIgnoreCase("run")) {
+                argList.add("dryrun");
+            }
+
+            if (args.length == 2 && args[0].equalsIgnoreCase("preview")) {
+                argList.addAll(List.of("commit", "cancel"));
             }
 
             if (args.length == 2 && args[0].equalsIgnoreCase("mode")) {
-                argList.addAll(getModeOptions());
+                argList.addAll(MODE_OPTIONS);
             }
 
             if (args.length == 2 && args[0].equalsIgnoreCase("axis")) {
-                argList.addAll(getAxisOptions());
+                argList.addAll(AXIS_OPTIONS);
             }
 
             if (args.length == 2 && args[0].equalsIgnoreCase("slot")) {
-                argList.addAll(getSlotOptions());
+                argList.addAll(SLOT_OPTIONS);
             }
 
             if (args.length == 2 && args[0].equalsIgnoreCase("adj")) {
-                argList.addAll(getAdjOptions());
+                argList.addAll(ADJ_OPTIONS);
             }
 
-            return argList.stream().filter(a -> a.startsWith(args[0])).toList();
+            // Only the argument being typed is completed
+            String typed = args[args.length - 1].toLowerCase();
+            return argList.stream().filter(a -> a.toLowerCase().startsWith(typed)).toList();
         }
 
         return Collections.emptyList();
@@ -566,26 +977,19 @@ public class CommandEx implements CommandExecutor, TabCompleter {
             commandName.equalsIgnoreCase("asedit");
     }
 
-    private List<String> getModeOptions() {
-        return List.of(
-            "None", "Invisible", "ShowArms", "Gravity", "BasePlate",
-            "Size", "Copy", "Paste", "Head", "Body", "LeftArm",
-            "RightArm", "LeftLeg", "RightLeg", "Placement",
-            "DisableSlots", "Rotate", "Equipment", "Reset",
-            "ItemFrame", "ItemFrameGlow", "Vulnerability", "ArmorStandGlow"
-        );
-    }
-
-    private List<String> getAxisOptions() {
-        return List.of("X", "Y", "Z");
-    }
-
-    private List<String> getSlotOptions() {
-        return List.of("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
-    }
-
-    private List<String> getAdjOptions() {
-        return List.of("Coarse", "Fine");
-    }
+    // Argument options, also used for the Brigadier tree
+    static final List<String> MODE_OPTIONS = List.of(
+        "None", "Invisible", "ShowArms", "Gravity", "BasePlate",
+        "Size", "Copy", "Paste", "Head", "Body", "LeftArm",
+        "RightArm", "LeftLeg", "RightLeg", "Placement",
+        "DisableSlots", "Rotate", "Equipment", "Reset",
+        "ItemFrame", "ItemFrameGlow", "Vulnerability", "ArmorStandGlow", "Select", "Drag"
+    );
+    static final List<String> AXIS_OPTIONS = List.of("X", "Y", "Z");
+    static final List<String> SLOT_OPTIONS = List.of("1", "2", "3", "4", "5", "6", "7", "8", "9");
+    static final List<String> ADJ_OPTIONS = List.of("Coarse", "Fine");
+    static final List<String> SELECT_OPTIONS = List.of("radius", "pos1", "pos2", "cuboid", "clear", "list");
+    static final List<String> ANIM_OPTIONS = List.of("record", "key", "save", "cancel", "play", "stop", "list", "delete");
+    static final List<String> BATCH_OPTIONS = List.of("run", "cancel");
 
 }
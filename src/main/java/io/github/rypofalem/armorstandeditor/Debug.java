@@ -16,6 +16,7 @@ public class Debug {
     public void log(String msg) {
         debugTurnedOn = plugin.isDebug();
         if (!debugTurnedOn) return;
+        if (plugin.getLoadShedder() != null && plugin.getLoadShedder().isShedding(LoadShedder.Level.NO_DEBUG)) return;
         Bukkit.getServer().getLogger().log(Level.INFO, "[ArmorStandEditor-Debug] " + msg);
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.modes.ArmorStandData;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Material;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies a target state to a stand one property at a time, only calling a setter when the value actually differs.
+ * Every setter marks entity data dirty and gets sent to everyone tracking the stand, so pasting or resetting a stand
+ * that is already mostly right should not rewrite all of it.
+ * <p>
+ * Each method returns how many writes it skipped.
+ */
+public abstract class DiffApplier {
+
+    private static final AtomicLong checked = new AtomicLong();
+    private static final AtomicLong skipped = new AtomicLong();
+
+    public static int applyPose(ArmorStand armorStand, PoseBuffer pose, PosePart part) {
+        if (pose.matches(part, part.get(armorStand))) return skip();
+        pose.write(armorStand, part);
+        return write();
+    }
+
+    public static int applyPoses(ArmorStand armorStand, PoseBuffer pose) {
+        int skippedWrites = 0;
+        for (PosePart part : PosePart.values()) skippedWrites += applyPose(armorStand, pose, part);
+        return skippedWrites;
+    }
+
+    /**
+     * Pastes copied data onto the stand. Equipment is only applied when asked to (creative mode pastes).
+     */
+    public static int apply(ArmorStand armorStand, ArmorStandData data, boolean equipment) {
+        int skippedWrites = applyPoses(armorStand, data.pose);
+
+        if (Capabilities.SCALE_ATTRIBUTE) {
+            AttributeInstance scale = armorStand.getAttribute(Attribute.SCALE);
+            if (scale != null) {
+                if (scale.getBaseValue() == data.attributeScale) {
+                    skippedWrites += skip();
+                } else {
+                    scale.setBaseValue(data.attributeScale);
+                    write();
+                }
+            }
+        } else if (armorStand.isSmall() == data.size) {
+            skippedWrites += skip();
+        } else {
+            armorStand.setSmall(data.size);
+            write();
+        }
+
+        if (armorStand.hasGravity() == data.gravity) skippedWrites += skip(); else { armorStand.setGravity(data.gravity); write(); }
+        if (armorStand.hasBasePlate() == data.basePlate) skippedWrites += skip(); else { armorStand.setBasePlate(data.basePlate); write(); }
+        if (armorStand.hasArms() == data.showArms) skippedWrites += skip(); else { armorStand.setArms(data.showArms); write(); }
+        if (armorStand.isVisible() == data.visible) skippedWrites += skip(); else { armorStand.setVisible(data.visible); write(); }
+
+        if (equipment) {
+            EntityEquipment eq = armorStand.getEquipment();
+            if (sameItem(eq.getHelmet(), data.head)) skippedWrites += skip(); else { eq.setHelmet(data.head); write(); }
+            if (sameItem(eq.getChestplate(), data.body)) skippedWrites += skip(); else { eq.setChestplate(data.body); write(); }
+            if (sameItem(eq.getLeggings(), data.legs)) skippedWrites += skip(); else { eq.setLeggings(data.legs); write(); }
+            if (sameItem(eq.getBoots(), data.feetsies)) skippedWrites += skip(); else { eq.setBoots(data.feetsies); write(); }
+            if (sameItem(eq.getItemInMainHand(), data.rightHand)) skippedWrites += skip(); else { eq.setItemInMainHand(data.rightHand); write(); }
+            if (sameItem(eq.getItemInOffHand(), data.leftHand)) skippedWrites += skip(); else { eq.setItemInOffHand(data.leftHand); write(); }
+        }
+        return skippedWrites;
+    }
+
+    // An empty slot may come back as null or as an air stack depending on the server
+    private static boolean sameItem(ItemStack current, ItemStack target) {
+        boolean currentEmpty = current == null || current.getType() == Material.AIR;
+        boolean targetEmpty = target == null || target.getType() == Material.AIR;
+        if (currentEmpty || targetEmpty) return currentEmpty == targetEmpty;
+        return current.equals(target);
+    }
+
+    private static int skip() {
+        checked.incrementAndGet();
+        skipped.incrementAndGet();
+        return 1;
+    }
+
+    private static int write() {
+        checked.incrementAndGet();
+        return 0;
+    }
+
+    public static long getCheckedCount() {
+        return checked.get();
+    }
+
+    public static long getSkippedCount() {
+        return skipped.get();
+    }
+}
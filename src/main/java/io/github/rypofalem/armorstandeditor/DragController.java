@@ -0,0 +1,192 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import org.bukkit.Bukkit;
+import org.bukkit.FluidCollisionMode;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Player;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves stands picked up in Drag mode along with the point the player is looking at. The point is worked out every
+ * tick on the player's thread, but the stand is only moved once it has drifted or turned past the configured
+ * thresholds, so dragging a stand across a room costs a bounded stream of updates instead of hundreds of
+ * placement clicks. Clicking again (or logging out) puts the stand down on the last point and records the move
+ * for undo.
+ */
+public class DragController implements Runnable {
+
+    private final ArmorStandEditorPlugin plugin;
+    private final Debug debug;
+    private final Map<UUID, DragSession> sessions = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public DragController(ArmorStandEditorPlugin plugin) {
+        this.plugin = plugin;
+        this.debug = new Debug(plugin);
+        Scheduler.runSyncTaskTimer(plugin, this, 1, 1);
+    }
+
+    public boolean isDragging(UUID player) {
+        return sessions.containsKey(player);
+    }
+
+    /**
+     * Picks the stand up, keeping its current distance from the player's eyes.
+     */
+    public void grab(Player player, ArmorStand armorStand) {
+        plugin.getCoalescer().flush(armorStand);
+        Location start = armorStand.getLocation();
+        double distance = Math.max(1, Math.min(player.getEyeLocation().distance(start), plugin.getLoadShedder().getTargetRange()));
+        sessions.put(player.getUniqueId(), new DragSession(armorStand, start, distance, player.getLocation().getYaw()));
+        debug.log("Player '" + player.getDisplayName() + "' picked up an ArmorStand at " + start.getX() + ", " + start.getY() + ", " + start.getZ());
+    }
+
+    /**
+     * Puts down whatever the player is dragging. Returns false if they were not dragging anything.
+     */
+    public boolean release(UUID player) {
+        DragSession session = sessions.remove(player);
+        if (session == null) return false;
+        Scheduler.executeAtEntity(plugin, session.armorStand, () -> commit(player, session), null);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        for (Map.Entry<UUID, DragSession> entry : sessions.entrySet()) {
+            DragSession session = entry.getValue();
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null) {
+                release(entry.getKey());
+                continue;
+            }
+            if (session.busy) continue; // The last update has not reached the stand yet
+            session.busy = true;
+            Scheduler.executeAtEntity(plugin, player, () -> track(player, session), () -> session.busy = false);
+        }
+    }
+
+    // On the player's thread: works out the new target and passes it on to the stand if it moved far enough
+    private void track(Player player, DragSession session) {
+        if (sessions.get(player.getUniqueId()) != session) {
+            session.busy = false;
+            return;
+        }
+        if (!session.armorStand.isValid() || player.getWorld() != session.start.getWorld()) {
+            session.busy = false;
+            release(player.getUniqueId());
+            return;
+        }
+
+        Location target = getLookPoint(player, session);
+        Location last = session.sent;
+        double minDistance = plugin.dragMinDistance;
+        float turned = Math.abs(Location.normalizeYaw(target.getYaw() - last.getYaw()));
+        if ((last.distanceSquared(target) < minDistance * minDistance && turned < plugin.dragMinAngle)
+                || !plugin.editorManager.canEdit(player, target)) {
+            skipped.incrementAndGet();
+            session.busy = false;
+            return;
+        }
+
+        session.sent = target;
+        Scheduler.executeAtEntity(plugin, session.armorStand, () -> {
+            if (session.armorStand.isValid()) {
+                Scheduler.transform(session.armorStand, target);
+                updates.incrementAndGet();
+            }
+            session.busy = false;
+        }, () -> session.busy = false);
+    }
+
+    // The first block in the player's view within the drag distance, or the point at that distance in the air
+    private Location getLookPoint(Player player, DragSession session) {
+        Location eye = player.getEyeLocation();
+        Vector direction = eye.getDirection();
+        RayTraceResult hit = player.getWorld().rayTraceBlocks(eye, direction, session.distance, FluidCollisionMode.NEVER, true);
+        Vector point = hit != null ? hit.getHitPosition() : eye.toVector().add(direction.multiply(session.distance));
+
+        // The stand turns with the player, so it keeps facing the same way relative to them
+        float yaw = Location.normalizeYaw(session.start.getYaw() + player.getLocation().getYaw() - session.playerYaw);
+        return point.toLocation(player.getWorld(), yaw, session.start.getPitch());
+    }
+
+    // On the stand's thread: makes sure it ends up on the last target and records the whole drag as one undo step
+    private void commit(UUID playerId, DragSession session) {
+        ArmorStand armorStand = session.armorStand;
+        if (!armorStand.isValid()) return;
+        Location end = session.sent;
+        Location current = armorStand.getLocation();
+        if (!current.equals(end)) Scheduler.transform(armorStand, end);
+
+        Player player = Bukkit.getPlayer(playerId);
+        if (player == null) return;
+        PlayerEditor pe = plugin.editorManager.getPlayerEditor(playerId);
+        EditHistory history = pe.getHistory();
+        int group = history.newGroup();
+        history.recordMove(armorStand.getUniqueId(), end.getX() - session.start.getX(), end.getY() - session.start.getY(), end.getZ() - session.start.getZ(), group);
+        float turned = Location.normalizeYaw(end.getYaw() - session.start.getYaw());
+        if (turned != 0) history.recordRotate(armorStand.getUniqueId(), turned, group);
+        debug.log("Player '" + player.getDisplayName() + "' put down an ArmorStand at " + end.getX() + ", " + end.getY() + ", " + end.getZ());
+        pe.sendFeedback("dragend", null);
+    }
+
+    public int getActiveCount() {
+        return sessions.size();
+    }
+
+    public long getUpdateCount() {
+        return updates.get();
+    }
+
+    // Ticks where the target moved too little to be worth an update
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    private static class DragSession {
+        final ArmorStand armorStand;
+        final Location start;
+        final double distance;
+        final float playerYaw;
+        volatile Location sent; // Last target sent to the stand
+        volatile boolean busy;
+
+        DragSession(ArmorStand armorStand, Location start, double distance, float playerYaw) {
+            this.armorStand = armorStand;
+            this.start = start;
+            this.distance = distance;
+            this.playerYaw = playerYaw;
+            this.sent = start;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.modes.Axis;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.util.EulerAngle;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects pose, position and rotation edits made to a stand during a tick and writes the end result
+ * once on the next tick, so rapid clicking (or several players on one stand) causes one update instead of one per click.
+ * <p>
+ * Edits and flushes for a stand always run on the thread owning the stand, so a stand's pending edit is never shared
+ * between threads. The map itself is concurrent because on Folia different stands are edited from different regions.
+ */
+public class EditCoalescer {
+
+    private final ArmorStandEditorPlugin plugin;
+    private final Debug debug;
+    private final Map<UUID, PendingEdit> pending = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong edits = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    public EditCoalescer(ArmorStandEditorPlugin plugin) {
+        this.plugin = plugin;
+        this.debug = new Debug(plugin);
+    }
+
+    /**
+     * Turns one axis of a pose part by the given step, on top of any edits not yet written this tick.
+     * Returns how far the angle actually moved, which differs from the step when it snaps back to 0.
+     */
+    public double adjustPose(ArmorStand armorStand, PosePart part, Axis axis, double change, boolean add) {
+        edits.incrementAndGet();
+        PendingEdit edit = plugin.coalesceEdits ? getPending(armorStand) : new PendingEdit();
+        int bit = 1 << part.ordinal();
+        if ((edit.dirtyParts & bit) == 0) {
+            edit.pose.read(armorStand, part);
+            edit.dirtyParts |= bit;
+        }
+
+        double[] values = edit.pose.array();
+        int i = PoseBuffer.index(part, axis);
+        double before = values[i];
+        values[i] = add ? Util.addAngle(before, change) : Util.subAngle(before, change);
+
+        if (!plugin.coalesceEdits) {
+            updates.incrementAndGet();
+            edit.pose.write(armorStand, part);
+        }
+        return values[i] - before;
+    }
+
+    /**
+     * Sets a whole pose part, on top of any edits not yet written this tick. Returns false if it already had that angle.
+     */
+    public boolean setPose(ArmorStand armorStand, PosePart part, double x, double y, double z) {
+        PendingEdit edit = plugin.coalesceEdits ? pending.get(armorStand.getUniqueId()) : null;
+        int bit = 1 << part.ordinal();
+        if (edit == null || (edit.dirtyParts & bit) == 0) {
+            EulerAngle current = part.get(armorStand);
+            if (current.getX() == x && current.getY() == y && current.getZ() == z) return false;
+        }
+        edits.incrementAndGet();
+
+        if (!plugin.coalesceEdits) {
+            updates.incrementAndGet();
+            part.set(armorStand, new EulerAngle(x, y, z));
+            return true;
+        }
+        edit = getPending(armorStand);
+        edit.pose.set(part, x, y, z);
+        edit.dirtyParts |= bit;
+        return true;
+    }
+
+    /**
+     * One axis of the stand's pose in radians, including adjustments not yet written this tick.
+     */
+    public double getPose(ArmorStand armorStand, PosePart part, Axis axis) {
+        PendingEdit edit = pending.get(armorStand.getUniqueId());
+        if (edit != null && (edit.dirtyParts & 1 << part.ordinal()) != 0) return edit.pose.get(part, axis);
+        return switch (axis) {
+            case X -> part.get(armorStand).getX();
+            case Y -> part.get(armorStand).getY();
+            case Z -> part.get(armorStand).getZ();
+        };
+    }
+
+    /**
+     * The stand's location including moves and rotations not yet written this tick. Always a copy.
+     */
+    public Location getLocation(ArmorStand armorStand) {
+        PendingEdit edit = pending.get(armorStand.getUniqueId());
+        if (edit != null && edit.location != null) return edit.location.clone();
+        return armorStand.getLocation();
+    }
+
+    public void setLocation(ArmorStand armorStand, Location location) {
+        edits.incrementAndGet();
+        if (!plugin.coalesceEdits) {
+            updates.incrementAndGet();
+            Scheduler.transform(armorStand, location);
+            return;
+        }
+        getPending(armorStand).location = location;
+    }
+
+    /**
+     * Writes anything pending for the stand right now. Called before edits that read or replace the whole stand
+     * (copy, paste, reset, presets...) so they see the same state the player does.
+     */
+    public void flush(ArmorStand armorStand) {
+        PendingEdit edit = pending.remove(armorStand.getUniqueId());
+        if (edit == null || !armorStand.isValid()) return;
+        updates.incrementAndGet();
+
+        for (PosePart part : PosePart.values()) {
+            if ((edit.dirtyParts & (1 << part.ordinal())) != 0) edit.pose.write(armorStand, part);
+        }
+        if (edit.location != null) {
+            debug.log("Armorstand will be teleported to: " + edit.location.getX() + ", " + edit.location.getY() + ", " + edit.location.getZ());
+            Scheduler.transform(armorStand, edit.location);
+        }
+    }
+
+    private PendingEdit getPending(ArmorStand armorStand) {
+        UUID uuid = armorStand.getUniqueId();
+        PendingEdit edit = pending.get(uuid);
+        if (edit == null) {
+            edit = new PendingEdit();
+            pending.put(uuid, edit);
+            // First edit this tick - write everything once on the next tick, on the stand's own thread
+            Scheduler.runAtEntity(plugin, armorStand, () -> flush(armorStand), () -> pending.remove(uuid));
+        }
+        return edit;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getEditCount() {
+        return edits.get();
+    }
+
+    // Edits that were merged into another edit's update instead of causing their own
+    public long getCoalescedCount() {
+        return Math.max(0, edits.get() - updates.get() - pending.size());
+    }
+
+    private static class PendingEdit {
+        final PoseBuffer pose = new PoseBuffer();
+        int dirtyParts; // Bit per PosePart ordinal
+        Location location;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import org.bukkit.Bukkit;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Server-wide governor for edit operations. Keeps track of the recent MSPT and, while the server is
+ * over budget, queues edits instead of running them straight away. Queued edits drain in FIFO order
+ * per player (round-robin between players) over the following ticks, never spending more than the
+ * configured number of milliseconds per tick.
+ * <p>
+ * Folia has no single server tick, so the governor steps aside there and every edit runs directly.
+ */
+public class EditGovernor implements Runnable {
+
+    private static final double TICK_MS = 50.0;
+    private static final double SMOOTHING = 0.2;
+
+    private final ArmorStandEditorPlugin plugin;
+    private final Debug debug;
+
+    private final HashMap<UUID, ArrayDeque<Runnable>> queues = new HashMap<>();
+    private final ArrayDeque<UUID> drainOrder = new ArrayDeque<>();
+
+    private double mspt = 0;
+    private long lastTickNanos = 0;
+    private long workNanosThisTick = 0;
+    private int queueDepth = 0;
+
+    // Metrics
+    private long executed = 0;
+    private long deferred = 0;
+    private long dropped = 0;
+    private int peakQueueDepth = 0;
+
+    public EditGovernor(ArmorStandEditorPlugin plugin) {
+        this.plugin = plugin;
+        this.debug = new Debug(plugin);
+        if (!Scheduler.isFolia()) {
+            Scheduler.runSyncTaskTimer(plugin, this, 1, 1);
+        }
+    }
+
+    /**
+     * Runs the operation now if the server has room for it, otherwise queues it behind the player's
+     * earlier operations.
+     */
+    public void submit(UUID player, Runnable operation) {
+        if (!isActive()) {
+            operation.run();
+            return;
+        }
+
+        ArrayDeque<Runnable> queue = queues.get(player);
+        boolean hasBacklog = queue != null && !queue.isEmpty();
+        if (!hasBacklog && !isOverloaded() && workNanosThisTick < getTickBudgetNanos()) {
+            execute(operation);
+            return;
+        }
+
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(player, queue);
+        }
+        if (queue.size() >= plugin.governorMaxQueued) {
+            dropped++;
+            debug.log("Edit Governor: queue full for " + player + ", dropping edit");
+            return;
+        }
+        if (queue.isEmpty()) drainOrder.add(player);
+        queue.add(operation);
+        deferred++;
+        queueDepth++;
+        if (queueDepth > peakQueueDepth) peakQueueDepth = queueDepth;
+    }
+
+    /**
+     * Throws away anything still queued for the player, for example when they log out.
+     */
+    public void clear(UUID player) {
+        ArrayDeque<Runnable> queue = queues.remove(player);
+        if (queue == null) return;
+        queueDepth -= queue.size();
+        drainOrder.remove(player);
+    }
+
+    @Override
+    public void run() {
+        sampleMspt();
+        workNanosThisTick = 0;
+        if (queueDepth == 0) return;
+
+        long budget = getTickBudgetNanos();
+        while (!drainOrder.isEmpty() && workNanosThisTick < budget) {
+            UUID player = drainOrder.poll();
+            ArrayDeque<Runnable> queue = queues.get(player);
+            if (queue == null || queue.isEmpty()) continue;
+
+            Runnable operation = queue.poll();
+            queueDepth--;
+            execute(operation);
+
+            if (queue.isEmpty()) {
+                queues.remove(player);
+            } else {
+                drainOrder.add(player);
+            }
+        }
+    }
+
+    private void execute(Runnable operation) {
+        long start = System.nanoTime();
+        try {
+            operation.run();
+        } finally {
+            workNanosThisTick += System.nanoTime() - start;
+            executed++;
+        }
+    }
+
+    private void sampleMspt() {
+        long now = System.nanoTime();
+        double sample;
+        if (Capabilities.PAPER) {
+            sample = Bukkit.getServer().getAverageTickTime();
+        } else {
+            // Spigot does not expose MSPT, so the time between two of our ticks is the closest we can get.
+            // It never reads below 50ms on a healthy server, which isOverloaded() accounts for.
+            if (lastTickNanos == 0) {
+                lastTickNanos = now;
+                return;
+            }
+            sample = (now - lastTickNanos) / 1_000_000.0;
+        }
+        lastTickNanos = now;
+        mspt = mspt == 0 ? sample : mspt + (sample - mspt) * SMOOTHING;
+    }
+
+    private boolean isActive() {
+        return plugin.governorEnabled && !Scheduler.isFolia();
+    }
+
+    public boolean isOverloaded() {
+        double threshold = plugin.governorMsptThreshold;
+        if (!Capabilities.PAPER) threshold = Math.max(threshold, TICK_MS + 2);
+        return mspt > threshold;
+    }
+
+    private long getTickBudgetNanos() {
+        return (long) (plugin.governorTickBudget * 1_000_000.0);
+    }
+
+    public double getMspt() {
+        return mspt;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    public int getQueuedPlayers() {
+        return queues.size();
+    }
+
+    public long getExecutedCount() {
+        return executed;
+    }
+
+    public long getDeferredCount() {
+        return deferred;
+    }
+
+    public long getDroppedCount() {
+        return dropped;
+    }
+}
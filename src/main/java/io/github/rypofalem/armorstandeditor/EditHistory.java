@@ -0,0 +1,333 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.modes.Axis;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Undo/redo history of one player's pose, move and rotate edits. Entries are kept as deltas in parallel primitive
+ * arrays that form a ring buffer, about 50 bytes per entry and no objects per edit.
+ * <p>
+ * Undoing or redoing several steps sums the deltas per stand first, so each stand gets a single update no matter
+ * how many steps are covered. Entries sharing a group (such as one edit applied to a whole selection) are one step.
+ * The capacity counts steps, not entries: the buffer grows for steps with many entries, up to a cap on the total
+ * entries, and shrinks back once the history is empty. The oldest steps are dropped as a whole to make room, so an
+ * edit to a large selection is never undone only partly. A step with more entries than the cap is not kept at all.
+ */
+public class EditHistory {
+
+    private static final byte POSE = 0;
+    private static final byte MOVE = 1;
+    private static final byte ROTATE = 2;
+
+    private int capacity;       // Steps
+    private final int maxEntries;
+    private final int initialLength;
+    private int length;         // Entries the arrays hold
+    private long[] standMost;
+    private long[] standLeast;
+    private byte[] type;
+    private byte[] part;
+    private byte[] axis;
+    private double[] x; // POSE: radians, MOVE: x offset, ROTATE: yaw degrees
+    private double[] y;
+    private double[] z;
+    private int[] group;
+
+    private int start = 0;  // Oldest entry
+    private int size = 0;   // Recorded entries, including undone ones
+    private int undone = 0; // Entries at the end that have been undone and may be redone
+    private int steps = 0;  // Runs of entries sharing a group among the size entries
+    private int lastGroup = 0;
+    private int skippedGroup = 0; // The last step dropped for having more entries than the cap
+
+    public EditHistory(int capacity, int maxEntries) {
+        this.capacity = Math.max(1, capacity);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.initialLength = Math.min(this.capacity, this.maxEntries);
+        allocate(initialLength);
+    }
+
+    private void allocate(int newLength) {
+        length = newLength;
+        standMost = new long[length];
+        standLeast = new long[length];
+        type = new byte[length];
+        part = new byte[length];
+        axis = new byte[length];
+        x = new double[length];
+        y = new double[length];
+        z = new double[length];
+        group = new int[length];
+    }
+
+    // Doubles the arrays up to the cap, laying the entries out from index 0 again
+    private void grow() {
+        long[] oldMost = standMost, oldLeast = standLeast;
+        byte[] oldType = type, oldPart = part, oldAxis = axis;
+        double[] oldX = x, oldY = y, oldZ = z;
+        int[] oldGroup = group;
+        int oldLength = length;
+        allocate((int) Math.min((long) oldLength * 2, maxEntries));
+        for (int k = 0; k < size; k++) {
+            int i = (start + k) % oldLength;
+            standMost[k] = oldMost[i];
+            standLeast[k] = oldLeast[i];
+            type[k] = oldType[i];
+            part[k] = oldPart[i];
+            axis[k] = oldAxis[i];
+            x[k] = oldX[i];
+            y[k] = oldY[i];
+            z[k] = oldZ[i];
+            group[k] = oldGroup[i];
+        }
+        start = 0;
+    }
+
+    // A group id for entries that should be undone and redone together
+    public synchronized int newGroup() {
+        return ++lastGroup;
+    }
+
+    public void recordPose(UUID stand, PosePart posePart, Axis poseAxis, double radians) {
+        recordPose(stand, posePart, poseAxis, radians, newGroup());
+    }
+
+    public synchronized void recordPose(UUID stand, PosePart posePart, Axis poseAxis, double radians, int groupId) {
+        int i = push(stand, POSE, groupId);
+        if (i < 0) return;
+        part[i] = (byte) posePart.ordinal();
+        axis[i] = (byte) poseAxis.ordinal();
+        x[i] = radians;
+    }
+
+    public void recordMove(UUID stand, double dx, double dy, double dz) {
+        recordMove(stand, dx, dy, dz, newGroup());
+    }
+
+    public synchronized void recordMove(UUID stand, double dx, double dy, double dz, int groupId) {
+        int i = push(stand, MOVE, groupId);
+        if (i < 0) return;
+        x[i] = dx;
+        y[i] = dy;
+        z[i] = dz;
+    }
+
+    public void recordRotate(UUID stand, double degrees) {
+        recordRotate(stand, degrees, newGroup());
+    }
+
+    public synchronized void recordRotate(UUID stand, double degrees, int groupId) {
+        int i = push(stand, ROTATE, groupId);
+        if (i < 0) return;
+        x[i] = degrees;
+    }
+
+    // A new edit throws away anything that could still be redone, and the oldest steps once full.
+    // Returns -1 if the entry is not kept, as its step has grown past the entry cap
+    private int push(UUID stand, byte entryType, int groupId) {
+        if (groupId == skippedGroup) return -1;
+        if (undone > 0) {
+            size -= undone;
+            undone = 0;
+            steps = countSteps();
+            shrinkIfEmpty();
+        }
+        if (size == 0 || group[(start + size - 1) % length] != groupId) {
+            steps++;
+            if (steps > capacity) dropOldestStep();
+        }
+        if (size == maxEntries) {
+            while (steps > 1 && size == maxEntries) dropOldestStep();
+            if (size == maxEntries) { // The new step alone fills the cap, it can not be undone as a whole
+                skippedGroup = groupId;
+                size = 0;
+                steps = 0;
+                shrinkIfEmpty();
+                return -1;
+            }
+        }
+        if (size == length) grow();
+        int i = (start + size) % length;
+        size++;
+        standMost[i] = stand.getMostSignificantBits();
+        standLeast[i] = stand.getLeastSignificantBits();
+        type[i] = entryType;
+        group[i] = groupId;
+        y[i] = 0;
+        z[i] = 0;
+        return i;
+    }
+
+    private void dropOldestStep() {
+        int oldest = group[start];
+        while (size > 0 && group[start] == oldest) {
+            start = (start + 1) % length;
+            size--;
+        }
+        steps--;
+    }
+
+    private void shrinkIfEmpty() {
+        if (size > 0) return;
+        start = 0;
+        if (length > initialLength) allocate(initialLength);
+    }
+
+    private int countSteps() {
+        int count = 0;
+        for (int k = 0; k < size; k++) {
+            if (k == 0 || group[(start + k) % length] != group[(start + k - 1) % length]) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Steps back through up to the given number of steps and returns the net change to apply per stand.
+     */
+    public synchronized Map<UUID, NetChange> undo(int steps) {
+        Map<UUID, NetChange> changes = new HashMap<>();
+        int count = 0;
+        int groups = 0;
+        int lastId = 0;
+        while (count < size - undone) {
+            int i = (start + size - undone - 1 - count) % length;
+            if (groups == 0 || group[i] != lastId) {
+                if (groups == steps) break;
+                groups++;
+                lastId = group[i];
+            }
+            accumulate(changes, i, -1);
+            count++;
+        }
+        undone += count;
+        return changes;
+    }
+
+    /**
+     * Steps forward through up to the given number of undone steps and returns the net change to apply per stand.
+     */
+    public synchronized Map<UUID, NetChange> redo(int steps) {
+        Map<UUID, NetChange> changes = new HashMap<>();
+        int count = 0;
+        int groups = 0;
+        int lastId = 0;
+        while (count < undone) {
+            int i = (start + size - undone + count) % length;
+            if (groups == 0 || group[i] != lastId) {
+                if (groups == steps) break;
+                groups++;
+                lastId = group[i];
+            }
+            accumulate(changes, i, 1);
+            count++;
+        }
+        undone -= count;
+        return changes;
+    }
+
+    private void accumulate(Map<UUID, NetChange> changes, int i, int sign) {
+        NetChange change = changes.computeIfAbsent(new UUID(standMost[i], standLeast[i]), uuid -> new NetChange());
+        change.steps++;
+        switch (type[i]) {
+            case POSE -> {
+                change.pose.array()[part[i] * 3 + axis[i]] += sign * x[i];
+                change.poseParts |= 1 << part[i];
+            }
+            case MOVE -> {
+                change.x += sign * x[i];
+                change.y += sign * y[i];
+                change.z += sign * z[i];
+                change.moved = true;
+            }
+            case ROTATE -> {
+                change.yaw += sign * x[i];
+                change.moved = true;
+            }
+        }
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    // For limits only known once the player's permissions can be read, the arrays grow on their own
+    public synchronized void raiseCapacity(int capacity) {
+        this.capacity = Math.max(this.capacity, capacity);
+    }
+
+    /**
+     * Whether the step was left out of the history for having more entries than the cap.
+     */
+    public synchronized boolean wasSkipped(int groupId) {
+        return groupId != 0 && groupId == skippedGroup;
+    }
+
+    /**
+     * The summed deltas of several history entries for one stand.
+     */
+    public static class NetChange {
+        final PoseBuffer pose = new PoseBuffer(); // Deltas, not absolute angles
+        int poseParts; // Bit per PosePart ordinal
+        double x, y, z, yaw;
+        boolean moved;
+        int steps;
+
+        public int getSteps() {
+            return steps;
+        }
+
+        /**
+         * Applies the change to the stand with one pose update per changed part and at most one transform.
+         * Must run on the thread owning the stand.
+         */
+        public void apply(ArmorStand armorStand) {
+            if (poseParts != 0) {
+                PoseBuffer current = new PoseBuffer();
+                double[] values = current.array();
+                double[] deltas = pose.array();
+                for (PosePart posePart : PosePart.values()) {
+                    if ((poseParts & (1 << posePart.ordinal())) == 0) continue;
+                    current.read(armorStand, posePart);
+                    for (Axis poseAxis : Axis.values()) {
+                        int i = PoseBuffer.index(posePart, poseAxis);
+                        values[i] += deltas[i];
+                    }
+                    current.write(armorStand, posePart);
+                }
+            }
+
+            if (moved) {
+                Location loc = armorStand.getLocation();
+                loc.add(x, y, z);
+                loc.setYaw(Location.normalizeYaw(loc.getYaw() + (float) yaw));
+                Scheduler.transform(armorStand, loc);
+            }
+        }
+    }
+}
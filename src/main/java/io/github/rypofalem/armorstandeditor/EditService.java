@@ -0,0 +1,250 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.api.ArmorStandEditService;
+import io.github.rypofalem.armorstandeditor.menu.PresetArmorPosesMenu;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Player;
+import org.bukkit.util.EulerAngle;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * The ArmorStandEditService other plugins get from the ServicesManager.
+ * <p>
+ * A single stand is edited on its own thread. A collection becomes a bulk edit per world on the BulkExecutor, which
+ * shares its tick budget with the players' bulk edits. Those jobs are not saved across restarts, the caller is still
+ * waiting on the future.
+ */
+public class EditService implements ArmorStandEditService {
+
+    private final ArmorStandEditorPlugin plugin;
+
+    public EditService(ArmorStandEditorPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setPose(ArmorStand armorStand, PosePart part, EulerAngle angle, Player actor) {
+        double x = angle.getX();
+        double y = angle.getY();
+        double z = angle.getZ();
+        return single(armorStand, actor, stand -> plugin.getCoalescer().setPose(stand, part, x, y, z));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setPose(ArmorStand armorStand, double[] pose, Player actor) {
+        return single(armorStand, actor, setPose(pose));
+    }
+
+    @Override
+    public CompletableFuture<Integer> setPose(Collection<? extends ArmorStand> armorStands, double[] pose, Player actor) {
+        return submit(armorStands, actor, setPose(pose));
+    }
+
+    // Copied once up front and shared by every stand of the call
+    private Predicate<ArmorStand> setPose(double[] pose) {
+        if (pose.length != PoseBuffer.SIZE) throw new IllegalArgumentException("A pose has " + PoseBuffer.SIZE + " values, got " + pose.length);
+        double[] values = pose.clone();
+        return armorStand -> {
+            boolean changed = false;
+            for (PosePart part : PosePart.values()) {
+                int i = part.ordinal() * 3;
+                changed |= plugin.getCoalescer().setPose(armorStand, part, values[i], values[i + 1], values[i + 2]);
+            }
+            return changed;
+        };
+    }
+
+    @Override
+    public CompletableFuture<Boolean> transform(ArmorStand armorStand, Location location, Player actor) {
+        Location target = location.clone();
+        Predicate<ArmorStand> move = stand -> {
+            plugin.getCoalescer().setLocation(stand, target.clone());
+            return true;
+        };
+        if (actor == null) return single(armorStand, null, move);
+
+        // The destination is checked on its own thread first, it is not necessarily in the stand's region
+        CompletableFuture<Boolean> allowed = new CompletableFuture<>();
+        Scheduler.runAtLocation(plugin, target, () -> {
+            try {
+                allowed.complete(plugin.editorManager.canEdit(actor, target));
+            } catch (RuntimeException e) {
+                allowed.completeExceptionally(e);
+            }
+        });
+        return allowed.thenCompose(ok -> ok ? single(armorStand, actor, move) : CompletableFuture.completedFuture(false));
+    }
+
+    @Override
+    public CompletableFuture<Integer> transform(Collection<? extends ArmorStand> armorStands, Vector offset, float yaw, Player actor) {
+        double dx = offset.getX();
+        double dy = offset.getY();
+        double dz = offset.getZ();
+        return submit(armorStands, actor, armorStand -> {
+            if (dx == 0 && dy == 0 && dz == 0 && yaw == 0) return false;
+            Location to = plugin.getCoalescer().getLocation(armorStand).add(dx, dy, dz);
+            to.setYaw(Location.normalizeYaw(to.getYaw() + yaw));
+            if (actor != null) {
+                if (!Scheduler.isOwnedByCurrentRegion(to.getWorld(), to.getBlockX() >> 4, to.getBlockZ() >> 4)) return false;
+                if (!plugin.editorManager.canEdit(actor, to)) return false;
+            }
+            plugin.getCoalescer().setLocation(armorStand, to);
+            return true;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setProperty(ArmorStand armorStand, Property property, boolean value, Player actor) {
+        return single(armorStand, actor, stand -> setProperty(stand, property, value));
+    }
+
+    @Override
+    public CompletableFuture<Integer> setProperty(Collection<? extends ArmorStand> armorStands, Property property, boolean value, Player actor) {
+        return submit(armorStands, actor, armorStand -> setProperty(armorStand, property, value));
+    }
+
+    private boolean setProperty(ArmorStand armorStand, Property property, boolean value) {
+        plugin.getCoalescer().flush(armorStand);
+        switch (property) {
+            case ARMS -> {
+                if (armorStand.hasArms() == value) return false;
+                armorStand.setArms(value);
+            }
+            case VISIBLE -> {
+                if (armorStand.isVisible() == value) return false;
+                armorStand.setVisible(value);
+            }
+            case BASE_PLATE -> {
+                if (armorStand.hasBasePlate() == value) return false;
+                armorStand.setBasePlate(value);
+            }
+            case GRAVITY -> {
+                if (armorStand.hasGravity() == value) return false;
+                armorStand.setGravity(value);
+            }
+            case INVULNERABLE -> {
+                if (armorStand.isInvulnerable() == value) return false;
+                armorStand.setInvulnerable(value);
+            }
+            case GLOWING -> {
+                if (armorStand.isGlowing() == value) return false;
+                armorStand.setGlowing(value);
+            }
+            case SMALL -> {
+                if (armorStand.isSmall() == value) return false;
+                armorStand.setSmall(value);
+            }
+            case SLOTS_LOCKED -> {
+                return StandOperation.setSlotsLocked(plugin, armorStand, value);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> applyPreset(ArmorStand armorStand, String preset, Player actor) {
+        return single(armorStand, actor, applyPreset(preset));
+    }
+
+    @Override
+    public CompletableFuture<Integer> applyPreset(Collection<? extends ArmorStand> armorStands, String preset, Player actor) {
+        return submit(armorStands, actor, applyPreset(preset));
+    }
+
+    private Predicate<ArmorStand> applyPreset(String preset) {
+        PoseBuffer pose = PresetArmorPosesMenu.getPreset(preset);
+        if (pose == null) throw new IllegalArgumentException("Unknown preset: " + preset);
+        return armorStand -> {
+            plugin.getCoalescer().flush(armorStand);
+            return DiffApplier.applyPoses(armorStand, pose) < PosePart.values().length;
+        };
+    }
+
+    @Override
+    public Set<String> getPresetNames() {
+        return PresetArmorPosesMenu.getPresetNames();
+    }
+
+    private CompletableFuture<Boolean> single(ArmorStand armorStand, Player actor, Predicate<ArmorStand> edit) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        Scheduler.runAtEntity(plugin, armorStand, () -> {
+            try {
+                future.complete(armorStand.isValid() && (actor == null || plugin.editorManager.canEdit(actor, armorStand)) && edit.test(armorStand));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, () -> future.complete(false));
+        return future;
+    }
+
+    private CompletableFuture<Integer> submit(Collection<? extends ArmorStand> armorStands, Player actor, Predicate<ArmorStand> edit) {
+        if (armorStands.isEmpty()) return CompletableFuture.completedFuture(0);
+
+        // An error does not stop the job, the first one is handed to the caller once it is done
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Predicate<ArmorStand> checked = armorStand -> {
+            try {
+                return (actor == null || plugin.editorManager.canEdit(actor, armorStand)) && edit.test(armorStand);
+            } catch (RuntimeException e) {
+                error.compareAndSet(null, e);
+                return false;
+            }
+        };
+
+        Map<UUID, Map<Long, List<UUID>>> worlds = new LinkedHashMap<>();
+        for (ArmorStand armorStand : armorStands) {
+            worlds.computeIfAbsent(armorStand.getWorld().getUID(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(Selection.chunkKey(armorStand.getLocation()), k -> new ArrayList<>()).add(armorStand.getUniqueId());
+        }
+
+        List<BulkJob> jobs = new ArrayList<>();
+        for (Map.Entry<UUID, Map<Long, List<UUID>>> world : worlds.entrySet()) {
+            Map<Long, UUID[]> chunks = new LinkedHashMap<>();
+            for (Map.Entry<Long, List<UUID>> chunk : world.getValue().entrySet()) chunks.put(chunk.getKey(), chunk.getValue().toArray(new UUID[0]));
+            BulkJob job = new BulkJob(world.getKey(), checked, chunks);
+            jobs.add(job);
+            plugin.getBulkExecutor().submit(job);
+        }
+
+        return CompletableFuture.allOf(jobs.stream().map(job -> job.finished).toArray(CompletableFuture[]::new)).thenApply(done -> {
+            if (error.get() != null) throw new CompletionException(error.get());
+            int edited = 0;
+            for (BulkJob job : jobs) edited += job.getEdited();
+            return edited;
+        });
+    }
+}
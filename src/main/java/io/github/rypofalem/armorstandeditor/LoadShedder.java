@@ -0,0 +1,107 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import java.util.List;
+
+/**
+ * Switches off cosmetic work one step at a time while the server is lagging, and switches it back on
+ * once it has recovered. Each level also includes everything shed by the levels below it.
+ * <p>
+ * Only used where the server reports its real MSPT (Paper). Spigot only lets the EditGovernor time the gap between
+ * ticks, which never reads below 50ms, so the thresholds would be crossed on a healthy server and never left again.
+ * Folia has no single server tick to measure at all. In both cases the level stays at NORMAL.
+ */
+public class LoadShedder implements Runnable {
+
+    public enum Level {
+        NORMAL("Normal"),
+        NO_HIGHLIGHT("No Target Highlight"),
+        NO_FEEDBACK("No Edit Feedback"),
+        NO_DEBUG("No Debug Logging"),
+        NO_MENU_RENDER("No Menu Re-rendering"),
+        REDUCED_RANGE("Reduced Target Range");
+
+        private final String name;
+
+        Level(String name) {
+            this.name = name;
+        }
+
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final double DEFAULT_TARGET_RANGE = 10;
+    private static final long EVALUATE_PERIOD = 20;
+
+    private final ArmorStandEditorPlugin plugin;
+    private volatile Level level = Level.NORMAL;
+
+    public LoadShedder(ArmorStandEditorPlugin plugin) {
+        this.plugin = plugin;
+        if (isActive()) {
+            Scheduler.runSyncTaskTimer(plugin, this, EVALUATE_PERIOD, EVALUATE_PERIOD);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!plugin.loadSheddingEnabled) {
+            setLevel(Level.NORMAL);
+            return;
+        }
+
+        List<Double> thresholds = plugin.loadSheddingThresholds;
+        double mspt = plugin.getGovernor().getMspt();
+        int current = level.ordinal();
+
+        // Climb one step when over the next threshold, drop one step once comfortably below the current one
+        if (current < Level.values().length - 1 && current < thresholds.size() && mspt >= thresholds.get(current)) {
+            setLevel(Level.values()[current + 1]);
+        } else if (current > 0 && mspt < thresholds.get(current - 1) - plugin.loadSheddingRecovery) {
+            setLevel(Level.values()[current - 1]);
+        }
+    }
+
+    private void setLevel(Level newLevel) {
+        if (newLevel == level) return;
+        plugin.getLogger().info("Load shedding level changed from " + level + " to " + newLevel
+                + " (MSPT: " + String.format("%.2f", plugin.getGovernor().getMspt()) + ")");
+        level = newLevel;
+    }
+
+    public boolean isShedding(Level check) {
+        return level.ordinal() >= check.ordinal();
+    }
+
+    public boolean isActive() {
+        return Capabilities.PAPER && !Scheduler.isFolia();
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public double getTargetRange() {
+        return isShedding(Level.REDUCED_RANGE) ? plugin.loadSheddingRange : DEFAULT_TARGET_RANGE;
+    }
+}
@@ -33,23 +33,29 @@ import io.github.rypofalem.armorstandeditor.modes.ArmorStandData;
 import io.github.rypofalem.armorstandeditor.modes.Axis;
 import io.github.rypofalem.armorstandeditor.modes.CopySlots;
 import io.github.rypofalem.armorstandeditor.modes.EditMode;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
 import io.github.rypofalem.armorstandeditor.Debug;
 
 import org.bukkit.*;
-import org.bukkit.attribute.Attribute;
 import org.bukkit.entity.ArmorStand;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.scoreboard.Team;
-import org.bukkit.util.EulerAngle;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class PlayerEditor {
+    static final PoseBuffer RESET_POSE = new PoseBuffer();
+
     public ArmorStandEditorPlugin plugin;
     private Debug debug;
     Team team;
@@ -76,6 +82,18 @@ public class PlayerEditor {
     PresetArmorPosesMenu presetPoseMenu;
     SizeMenu sizeModificationMenu;
     long lastCancelled = 0;
+    private final EditHistory history; // Edited from several region threads at once by bulk edits
+    private final Selection selection = new Selection();
+    private boolean previewing;
+    private PreviewSession preview;
+    private BatchRun batch;
+    private boolean hotbar;
+
+    // The modes hotbar mode cycles through, those applied straight to the clicked stand
+    private static final List<EditMode> HOTBAR_MODES = List.of(
+            EditMode.HEAD, EditMode.BODY, EditMode.LEFTARM, EditMode.RIGHTARM, EditMode.LEFTLEG, EditMode.RIGHTLEG,
+            EditMode.PLACEMENT, EditMode.ROTATE, EditMode.SHOWARMS, EditMode.INVISIBLE, EditMode.BASEPLATE,
+            EditMode.GRAVITY, EditMode.GLOWING, EditMode.VULNERABILITY, EditMode.DISABLESLOTS, EditMode.RESET);
 
     public PlayerEditor(UUID uuid, ArmorStandEditorPlugin plugin) {
         this.uuid = uuid;
@@ -89,6 +107,8 @@ public class PlayerEditor {
         degreeAngleChange = eulerAngleChange / Math.PI * 180;
         movChange = getManager().coarseMov;
         chestMenu = new Menu(this);
+        history = new EditHistory(plugin.undoHistorySize, plugin.undoHistoryMaxEntries);
+        postToPlayer(() -> history.raiseCapacity(getHistorySize()));
     }
 
     public void setMode(EditMode editMode) {
@@ -97,6 +117,57 @@ public class PlayerEditor {
         sendMessage("setmode", editMode.toString().toLowerCase());
     }
 
+    // Hotbar mode: scrolling with the edit tool in hand cycles the mode, or the axis while sneaking, without any menu
+    public void toggleHotbar() {
+        hotbar = !hotbar;
+        debug.log("Player '" + getPlayer().getDisplayName() + "' turned hotbar mode " + (hotbar ? "on" : "off"));
+        sendMessage(hotbar ? "hotbaron" : "hotbaroff", null);
+        if (hotbar) showHotbar();
+    }
+
+    public boolean isHotbar() {
+        return hotbar;
+    }
+
+    // Steps to the next (or previous) mode the player may use, or the next axis when sneaking
+    void scrollHotbar(int direction, boolean sneaking) {
+        Player player = getPlayer();
+        if (player == null) return;
+        if (sneaking) {
+            Axis[] axes = Axis.values();
+            axis = axes[Math.floorMod(axis.ordinal() + direction, axes.length)];
+        } else {
+            int index = HOTBAR_MODES.indexOf(eMode);
+            if (index < 0 && direction < 0) index = HOTBAR_MODES.size();
+            for (int i = 1; i <= HOTBAR_MODES.size(); i++) {
+                EditMode mode = HOTBAR_MODES.get(Math.floorMod(index + direction * i, HOTBAR_MODES.size()));
+                if (StandOperation.canApply(plugin, mode, player)) {
+                    eMode = mode;
+                    break;
+                }
+            }
+        }
+        showHotbar();
+    }
+
+    // Always on the action bar, as it is replaced on every scroll
+    private void showHotbar() {
+        String line = hotbarPart("hotbarmode", "setmode", eMode) + "  "
+                + hotbarPart("hotbaraxis", "setaxis", axis) + "  "
+                + hotbarPart("hotbaradj", "setadj", adjMode);
+        postToPlayer(() -> {
+            Player player = getPlayer();
+            if (player != null) player.spigot().sendMessage(ChatMessageType.ACTION_BAR, new TextComponent(line));
+        });
+    }
+
+    // The value by the name the matching set message uses for it
+    private String hotbarPart(String path, String names, Object value) {
+        String option = value.toString().toLowerCase();
+        String name = plugin.getLang().getString(names + "." + option);
+        return plugin.getLang().getMessage(path, "info", name != null ? name : option);
+    }
+
     public void setAxis(Axis axis) {
         this.axis = axis;
         debug.log("Axis is: " + axis.toString().toLowerCase());
@@ -127,24 +198,28 @@ public class PlayerEditor {
         if (getPlayer().hasPermission("asedit.basic")) {
 
             armorStand = attemptTarget(armorStand);
+            if (armorStand == null) return;
+            if (PosePart.fromEditMode(eMode) == null && eMode != EditMode.PLACEMENT && eMode != EditMode.ROTATE) {
+                plugin.getCoalescer().flush(armorStand); // Everything else should see this tick's pose and position edits
+            }
             switch (eMode) {
                 case LEFTARM:
-                    armorStand.setLeftArmPose(subEulerAngle(armorStand.getLeftArmPose()));
+                    adjustPose(armorStand, PosePart.LEFTARM, false);
                     break;
                 case RIGHTARM:
-                    armorStand.setRightArmPose(subEulerAngle(armorStand.getRightArmPose()));
+                    adjustPose(armorStand, PosePart.RIGHTARM, false);
                     break;
                 case BODY:
-                    armorStand.setBodyPose(subEulerAngle(armorStand.getBodyPose()));
+                    adjustPose(armorStand, PosePart.BODY, false);
                     break;
                 case HEAD:
-                    armorStand.setHeadPose(subEulerAngle(armorStand.getHeadPose()));
+                    adjustPose(armorStand, PosePart.HEAD, false);
                     break;
                 case LEFTLEG:
-                    armorStand.setLeftLegPose(subEulerAngle(armorStand.getLeftLegPose()));
+                    adjustPose(armorStand, PosePart.LEFTLEG, false);
                     break;
                 case RIGHTLEG:
-                    armorStand.setRightLegPose(subEulerAngle(armorStand.getRightLegPose()));
+                    adjustPose(armorStand, PosePart.RIGHTLEG, false);
                     break;
                 case SHOWARMS:
                     toggleArms(armorStand);
@@ -191,6 +266,12 @@ public class PlayerEditor {
                 case PRESET:
                     choosePreset(armorStand);
                     break;
+                case SELECT:
+                    toggleSelected(armorStand);
+                    break;
+                case DRAG:
+                    drag(armorStand);
+                    break;
                 case NONE:
                 default:
                     sendMessage("nomode", null);
@@ -204,9 +285,11 @@ public class PlayerEditor {
         if (getPlayer().hasPermission("asedit.toggleitemframevisibility") || plugin.invisibleItemFrames) {
 
             //Generate a new ArmorStandManipulationEvent and call it out.
-            ItemFrameManipulatedEvent event = new ItemFrameManipulatedEvent(itemFrame, getPlayer());
-            Bukkit.getPluginManager().callEvent(event); // Bukkit handles the call out
-            if (event.isCancelled()) return; //do nothing if cancelled
+            if (ListenedEvent.ITEM_FRAME_MANIPULATED.isListened()) {
+                ItemFrameManipulatedEvent event = new ItemFrameManipulatedEvent(itemFrame, getPlayer());
+                Bukkit.getPluginManager().callEvent(event); // Bukkit handles the call out
+                if (event.isCancelled()) return; //do nothing if cancelled
+            }
 
             switch (eMode) {
                 case ITEMFRAME:
@@ -225,6 +308,10 @@ public class PlayerEditor {
 
     private void openEquipment(ArmorStand armorStand) {
         if (!getPlayer().hasPermission("asedit.equipment")) return;
+        if (PreviewSession.isClone(armorStand)) { // Items put on the copy would be lost with it
+            sendMessage("previewequipment", "warn", null);
+            return;
+        }
 
         // Dont allow Editing the ArmorStand if the Stand is on the AS-InUse Team
         // Means No 2 Players can edit the Equipment at the same time
@@ -237,7 +324,6 @@ public class PlayerEditor {
             if(team != null && !team.hasEntry(armorStandInUseId.toString())){
                 debug.log("ArmorStand Not on a Team and Player '" + getPlayer().getDisplayName() + "' has triggered to Open the Equipment Menu, Adding to In Use Team");
                 team.addEntry(armorStandInUseId.toString());
-                getPlayer().closeInventory();
                 equipMenu = new EquipmentMenu(this, armorStand);
                 equipMenu.openMenu();
             } else {
@@ -245,7 +331,6 @@ public class PlayerEditor {
             }
         } else { 
                 debug.log("ArmorStand Not on a Team and Player '" + getPlayer().getDisplayName() + "' has triggered to Open the Equipment Menu. Folia.");
-                getPlayer().closeInventory();
                 equipMenu = new EquipmentMenu(this, armorStand);
                 equipMenu.openMenu();
         }
@@ -254,9 +339,11 @@ public class PlayerEditor {
     private void choosePreset(ArmorStand armorStand) {
         if (!getPlayer().hasPermission("asedit.basic")) return;
         debug.log("Player '" + getPlayer().getDisplayName() + "' has triggered the Preset Poses Menu");
-        getPlayer().closeInventory();
         presetPoseMenu = new PresetArmorPosesMenu(this, armorStand);
-        presetPoseMenu.openMenu();
+        postToPlayer(() -> {
+            getPlayer().closeInventory();
+            presetPoseMenu.openMenu();
+        });
     }
 
     //Size Menu Refactor
@@ -265,12 +352,14 @@ public class PlayerEditor {
             sendMessage("nopermoption", "warn", "size");
             return;
         } else {
-            if (plugin.getNmsVersion().compareTo("1.21.4") >= 0 || plugin.getNmsVersion().compareTo("v1_21_R3") >= 0) {
+            if (Capabilities.SCALE_ATTRIBUTE) {
                 //NOTE: New Sizing Menu ONLY WORKS IN 1.21.3 and HIGHER
                 debug.log("Player '" + getPlayer().getDisplayName() + "' has triggered the AS Attribute Size Menu");
-                getPlayer().closeInventory();
                 sizeModificationMenu = new SizeMenu(this, armorStand);
-                sizeModificationMenu.openMenu();
+                postToPlayer(() -> {
+                    getPlayer().closeInventory();
+                    sizeModificationMenu.openMenu();
+                });
             } else {
                 armorStand.setSmall(!armorStand.isSmall());
             }
@@ -282,29 +371,32 @@ public class PlayerEditor {
         if (!getPlayer().hasPermission("asedit.basic")) return;
 
         //Generate a new ArmorStandManipulationEvent and call it out.
-        ArmorStandManipulatedEvent event = new ArmorStandManipulatedEvent(armorStand, getPlayer());
-        Bukkit.getPluginManager().callEvent(event); // Bukkit handles the call out //TODO: Folia Refactor
-        if (event.isCancelled()) return; //do nothing if cancelled
+        if (ListenedEvent.ARMOR_STAND_MANIPULATED.isListened()) {
+            ArmorStandManipulatedEvent event = new ArmorStandManipulatedEvent(armorStand, getPlayer());
+            Bukkit.getPluginManager().callEvent(event); // Bukkit handles the call out //TODO: Folia Refactor
+            if (event.isCancelled()) return; //do nothing if cancelled
+        }
 
         armorStand = attemptTarget(armorStand);
+        if (armorStand == null) return;
         switch (eMode) {
             case LEFTARM:
-                armorStand.setLeftArmPose(addEulerAngle(armorStand.getLeftArmPose()));
+                adjustPose(armorStand, PosePart.LEFTARM, true);
                 break;
             case RIGHTARM:
-                armorStand.setRightArmPose(addEulerAngle(armorStand.getRightArmPose()));
+                adjustPose(armorStand, PosePart.RIGHTARM, true);
                 break;
             case BODY:
-                armorStand.setBodyPose(addEulerAngle(armorStand.getBodyPose()));
+                adjustPose(armorStand, PosePart.BODY, true);
                 break;
             case HEAD:
-                armorStand.setHeadPose(addEulerAngle(armorStand.getHeadPose()));
+                adjustPose(armorStand, PosePart.HEAD, true);
                 break;
             case LEFTLEG:
-                armorStand.setLeftLegPose(addEulerAngle(armorStand.getLeftLegPose()));
+                adjustPose(armorStand, PosePart.LEFTLEG, true);
                 break;
             case RIGHTLEG:
-                armorStand.setRightLegPose(addEulerAngle(armorStand.getRightLegPose()));
+                adjustPose(armorStand, PosePart.RIGHTLEG, true);
                 break;
             case PLACEMENT:
                 reverseMove(armorStand);
@@ -321,11 +413,13 @@ public class PlayerEditor {
         if (!getPlayer().hasPermission("asedit.movement")) return;
 
         //Generate a new ArmorStandManipulationEvent and call it out.
-        ArmorStandManipulatedEvent event = new ArmorStandManipulatedEvent(armorStand, getPlayer());
-        Bukkit.getPluginManager().callEvent(event); // Bukkit handles the call out //TODO: Folia Refactor
-        if (event.isCancelled()) return; //do nothing if cancelled
+        if (ListenedEvent.ARMOR_STAND_MANIPULATED.isListened()) {
+            ArmorStandManipulatedEvent event = new ArmorStandManipulatedEvent(armorStand, getPlayer());
+            Bukkit.getPluginManager().callEvent(event); // Bukkit handles the call out //TODO: Folia Refactor
+            if (event.isCancelled()) return; //do nothing if cancelled
+        }
 
-        Location loc = armorStand.getLocation();
+        Location loc = plugin.getCoalescer().getLocation(armorStand);
         switch (axis) {
             case X:
                 loc.add(movChange, 0, 0);
@@ -337,13 +431,14 @@ public class PlayerEditor {
                 loc.add(0, 0, movChange);
                 break;
         }
-        debug.log("Armorstand will be teleported to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
-        Scheduler.teleport(armorStand, loc);
+        debug.log("Armorstand will be moved to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
+        plugin.getCoalescer().setLocation(armorStand, loc);
+        recordMove(armorStand, movChange);
     }
 
     private void reverseMove(ArmorStand armorStand) {
         if (!getPlayer().hasPermission("asedit.movement")) return;
-        Location loc = armorStand.getLocation();
+        Location loc = plugin.getCoalescer().getLocation(armorStand);
         switch (axis) {
             case X:
                 loc.subtract(movChange, 0, 0);
@@ -355,26 +450,43 @@ public class PlayerEditor {
                 loc.subtract(0, 0, movChange);
                 break;
         }
-        debug.log("Armorstand will be teleported to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
-        Scheduler.teleport(armorStand, loc);
+        debug.log("Armorstand will be moved to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
+        plugin.getCoalescer().setLocation(armorStand, loc);
+        recordMove(armorStand, -movChange);
     }
 
     private void rotate(ArmorStand armorStand) {
         if (!getPlayer().hasPermission("asedit.rotation")) return;
-        Location loc = armorStand.getLocation();
+        Location loc = plugin.getCoalescer().getLocation(armorStand);
         float yaw = loc.getYaw();
         loc.setYaw((yaw + 180 + (float) degreeAngleChange) % 360 - 180);
-        debug.log("Armorstand will be teleported to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
-        Scheduler.teleport(armorStand, loc);
+        debug.log("Armorstand will be moved to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
+        plugin.getCoalescer().setLocation(armorStand, loc);
+        getHistory().recordRotate(armorStand.getUniqueId(), degreeAngleChange);
     }
 
     private void reverseRotate(ArmorStand armorStand) {
         if (!getPlayer().hasPermission("asedit.rotation")) return;
-        Location loc = armorStand.getLocation();
+        Location loc = plugin.getCoalescer().getLocation(armorStand);
         float yaw = loc.getYaw();
         loc.setYaw((yaw + 180 - (float) degreeAngleChange) % 360 - 180);
-        debug.log("Armorstand will be teleported to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
-        Scheduler.teleport(armorStand, loc);
+        debug.log("Armorstand will be moved to: " + loc.getX() + ", " + loc.getY()+ ", " + loc.getZ() + ", near player " + getPlayer().getDisplayName());
+        plugin.getCoalescer().setLocation(armorStand, loc);
+        getHistory().recordRotate(armorStand.getUniqueId(), -degreeAngleChange);
+    }
+
+    // First click picks the stand up, the next one puts it down
+    private void drag(ArmorStand armorStand) {
+        if (!getPlayer().hasPermission("asedit.movement")) return;
+        DragController drag = plugin.getDragController();
+        if (drag.release(getUUID())) return;
+        drag.grab(getPlayer(), armorStand);
+        sendMessage("dragstart", null);
+    }
+
+    private void recordMove(ArmorStand armorStand, double distance) {
+        getHistory().recordMove(armorStand.getUniqueId(),
+                axis == Axis.X ? distance : 0, axis == Axis.Y ? distance : 0, axis == Axis.Z ? distance : 0);
     }
 
     private void copy(ArmorStand armorStand) {
@@ -394,35 +506,12 @@ public class PlayerEditor {
             ArmorStandData data = copySlots.getDataToPaste();
             debug.log("Pasting ArmorStand Attributes and Settings from: " + (copySlots.currentSlot + 1) + ", near player " + getPlayer().getDisplayName());
             if (data == null) return;
-            armorStand.setHeadPose(data.headPos);
-            armorStand.setBodyPose(data.bodyPos);
-            armorStand.setLeftArmPose(data.leftArmPos);
-            armorStand.setRightArmPose(data.rightArmPos);
-            armorStand.setLeftLegPose(data.leftLegPos);
-            armorStand.setRightLegPose(data.rightLegPos);
-
-            if (plugin.getNmsVersion().compareTo("1.21.4") >= 0 || plugin.getNmsVersion().compareTo("v1_21_R3") >= 0) {
-                armorStand.getAttribute(Attribute.SCALE).setBaseValue(data.attributeScale);
-            } else {
-                armorStand.setSmall(data.size);
-            }
-
-            armorStand.setGravity(data.gravity);
-            armorStand.setBasePlate(data.basePlate);
-            armorStand.setArms(data.showArms);
-            armorStand.setVisible(data.visible);
 
             //Only Paste the Items on the stand if in Creative Mode
             // - Do not run elsewhere for good fecking reason!
-            if (this.getPlayer().getGameMode() == GameMode.CREATIVE) {
-                armorStand.getEquipment().setHelmet(data.head);
-                armorStand.getEquipment().setChestplate(data.body);
-                armorStand.getEquipment().setLeggings(data.legs);
-                armorStand.getEquipment().setBoots(data.feetsies);
-                armorStand.getEquipment().setItemInMainHand(data.rightHand);
-                armorStand.getEquipment().setItemInOffHand(data.leftHand);
-            }
-            sendMessage("pasted", "" + (copySlots.currentSlot + 1));
+            int skipped = DiffApplier.apply(armorStand, data, this.getPlayer().getGameMode() == GameMode.CREATIVE);
+            debug.log("Paste skipped " + skipped + " unchanged properties");
+            sendFeedback("pasted", "" + (copySlots.currentSlot + 1));
         } else {
             sendMessage("nopermoption", "warn", "paste");
         }
@@ -431,12 +520,8 @@ public class PlayerEditor {
     private void resetPosition(ArmorStand armorStand) {
         if (getPlayer().hasPermission("asedit.reset")) {
             debug.log("Resetting ArmorStand near the Player " + getPlayer().getDisplayName());
-            armorStand.setHeadPose(new EulerAngle(0, 0, 0));
-            armorStand.setBodyPose(new EulerAngle(0, 0, 0));
-            armorStand.setLeftArmPose(new EulerAngle(0, 0, 0));
-            armorStand.setRightArmPose(new EulerAngle(0, 0, 0));
-            armorStand.setLeftLegPose(new EulerAngle(0, 0, 0));
-            armorStand.setRightLegPose(new EulerAngle(0, 0, 0));
+            int skipped = DiffApplier.applyPoses(armorStand, RESET_POSE);
+            debug.log("Reset skipped " + skipped + " unchanged poses");
         } else {
             sendMessage("nopermoption", "warn", "reset");
         }
@@ -455,7 +540,7 @@ public class PlayerEditor {
                     armorStand.removeEquipmentLock(slot, ArmorStand.LockType.REMOVING_OR_CHANGING);
                     armorStand.removeEquipmentLock(slot, ArmorStand.LockType.ADDING);
                 }
-                getPlayer().playSound(getPlayer().getLocation(), Sound.ENTITY_ITEM_BREAK, SoundCategory.PLAYERS, 1.0f, 1.0f);
+                playSound(Sound.ENTITY_ITEM_BREAK);
 
                 if (team != null) {
                     team.removeEntry(armorStandID.toString());
@@ -469,14 +554,14 @@ public class PlayerEditor {
                     armorStand.addEquipmentLock(slot, ArmorStand.LockType.REMOVING_OR_CHANGING);
                     armorStand.addEquipmentLock(slot, ArmorStand.LockType.ADDING);
                 }
-                getPlayer().playSound(getPlayer().getLocation(), Sound.ITEM_ARMOR_EQUIP_IRON, SoundCategory.PLAYERS, 1.0f, 1.0f);
+                playSound(Sound.ITEM_ARMOR_EQUIP_IRON);
                 if (team != null) {
                     team.addEntry(armorStandID.toString());
                     armorStand.addPotionEffect(new PotionEffect(PotionEffectType.GLOWING, 50, 1, false, false)); //300 Ticks = 15 seconds
                 }
             }
 
-            sendMessage("disabledslots", null);
+            sendFeedback("disabledslots", null);
         }
 
     }
@@ -485,7 +570,7 @@ public class PlayerEditor {
         if (getPlayer().hasPermission("asedit.toggleInvulnerability")) {
             debug.log("Making an ArmorStand vulnerable/invulnerable (set armorStand.isInvulnerable() = '"+ !armorStand.isInvulnerable() +"') near player: " + getPlayer().getDisplayName());
             armorStand.setInvulnerable(!armorStand.isInvulnerable());
-            sendMessage("toggleinvulnerability", String.valueOf(armorStand.isInvulnerable()));
+            sendFeedback("toggleinvulnerability", String.valueOf(armorStand.isInvulnerable()));
         } else {
             sendMessage("nopermoption", "warn", "vulnerability");
         }
@@ -496,7 +581,7 @@ public class PlayerEditor {
         if (getPlayer().hasPermission("asedit.togglegravity")) {
             debug.log("Toggling the Gravity of an ArmorStand near player: " + getPlayer().getDisplayName());
             armorStand.setGravity(!armorStand.hasGravity());
-            sendMessage("setgravity", String.valueOf(armorStand.hasGravity()));//Fix for Wolfst0rm/ArmorStandEditor-Issues#6: Translation of On/Off Keys are broken
+            sendFeedback("setgravity", String.valueOf(armorStand.hasGravity()));//Fix for Wolfst0rm/ArmorStandEditor-Issues#6: Translation of On/Off Keys are broken
         } else {
             sendMessage("nopermoption", "warn", "gravity");
         }
@@ -563,40 +648,72 @@ public class PlayerEditor {
         setAxis(Axis.values()[index]);
     }
 
-    private EulerAngle addEulerAngle(EulerAngle angle) {
-        switch (axis) {
-            case X:
-                angle = angle.setX(Util.addAngle(angle.getX(), eulerAngleChange));
-                break;
-            case Y:
-                angle = angle.setY(Util.addAngle(angle.getY(), eulerAngleChange));
-                break;
-            case Z:
-                angle = angle.setZ(Util.addAngle(angle.getZ(), eulerAngleChange));
-                break;
-            default:
-                break;
+    // Pose edits go through the coalescer, which writes them to the stand once per tick
+    private void adjustPose(ArmorStand armorStand, PosePart part, boolean add) {
+        double change = plugin.getCoalescer().adjustPose(armorStand, part, axis, eulerAngleChange, add);
+        if (change != 0) getHistory().recordPose(armorStand.getUniqueId(), part, axis, change);
+    }
+
+
+    private void toggleSelected(ArmorStand armorStand) {
+        if (!getPlayer().hasPermission("asedit.select")) {
+            sendMessage("nopermoption", "warn", "select");
+            return;
+        }
+        if (selection.remove(armorStand.getUniqueId())) {
+            sendFeedback("selectremoved", String.valueOf(selection.size()));
+        } else if (selection.size() >= plugin.selectionLimit) {
+            sendMessage("selectfull", "warn", String.valueOf(plugin.selectionLimit));
+        } else {
+            selection.add(armorStand);
+            highlight(armorStand);
+            sendFeedback("selectadded", String.valueOf(selection.size()));
         }
-        return angle;
     }
 
-    private EulerAngle subEulerAngle(EulerAngle angle) {
-        switch (axis) {
-            case X:
-                angle = angle.setX(Util.subAngle(angle.getX(), eulerAngleChange));
-                break;
-            case Y:
-                angle = angle.setY(Util.subAngle(angle.getY(), eulerAngleChange));
-                break;
-            case Z:
-                angle = angle.setZ(Util.subAngle(angle.getZ(), eulerAngleChange));
-                break;
-            default:
-                break;
+    /**
+     * Adds the stands to the selection until it is full. Returns how many were added.
+     */
+    public int select(List<ArmorStand> armorStands) {
+        int added = 0;
+        synchronized (selection) { // Cuboid selections add from several region threads at once
+            for (ArmorStand armorStand : armorStands) {
+                if (selection.size() >= plugin.selectionLimit) break;
+                if (selection.add(armorStand)) added++;
+            }
         }
-        return angle;
+        return added;
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    /**
+     * Queues the current mode to be applied to every selected stand if the clicked stand is part of a selection.
+     * Returns false if the click should edit just the clicked stand instead, such as for modes that open a menu.
+     * Must run on the thread owning the clicked stand.
+     */
+    boolean editSelection(ArmorStand clicked, boolean reverse) {
+        if (eMode == EditMode.SELECT || previewing || selection.size() < 2 || !selection.contains(clicked.getUniqueId())) return false;
+        StandOperation operation = StandOperation.of(this, clicked, reverse);
+        UUID worldId = selection.getWorld();
+        if (operation == null || worldId == null) return false;
+
+        plugin.getBulkExecutor().submit(new BulkJob(getUUID(), worldId, operation, selection.snapshot()));
+        return true;
+    }
+
+    // Whether a selected stand may take part in a bulk edit, on the thread owning the stand
+    boolean canEditSelected(Player player, ArmorStand armorStand) {
+        return armorStand.isValid() && player.isOnline() && getManager().canEdit(player, armorStand);
     }
 
+    // Applies one stand's share of a bulk edit once its batch event went through, on the thread owning the stand
+    void editSelected(ArmorStand armorStand, StandOperation operation, int group) {
+        operation.apply(armorStand, getHistory(), group);
+        selection.relocate(armorStand.getUniqueId(), plugin.getCoalescer().getLocation(armorStand));
+    }
 
     public void setTarget(ArrayList<ArmorStand> armorStands) {
         if (armorStands == null || armorStands.isEmpty()) {
@@ -625,9 +742,11 @@ public class PlayerEditor {
             }
 
             //API: ArmorStandTargetedEvent
-            ArmorStandTargetedEvent e = new ArmorStandTargetedEvent(targetList.get(targetIndex), getPlayer());
-            Bukkit.getPluginManager().callEvent(e); //TODO: Folia Refactor
-            if (e.isCancelled()) return;
+            if (ListenedEvent.ARMOR_STAND_TARGETED.isListened()) {
+                ArmorStandTargetedEvent e = new ArmorStandTargetedEvent(targetList.get(targetIndex), getPlayer());
+                Bukkit.getPluginManager().callEvent(e); //TODO: Folia Refactor
+                if (e.isCancelled()) return;
+            }
 
             target = targetList.get(targetIndex);
             highlight(target); //NOTE: If Targeted and Locked, it displays the TEAM Color Glow: RED
@@ -664,9 +783,11 @@ public class PlayerEditor {
                 }
 
                 //API: ItemFrameTargetedEvent
-                ItemFrameTargetedEvent e = new ItemFrameTargetedEvent(frameTargetList.get(frameTargetIndex), getPlayer());
-                Bukkit.getPluginManager().callEvent(e); //TODO: Folia Refactor
-                if (e.isCancelled()) return;
+                if (ListenedEvent.ITEM_FRAME_TARGETED.isListened()) {
+                    ItemFrameTargetedEvent e = new ItemFrameTargetedEvent(frameTargetList.get(frameTargetIndex), getPlayer());
+                    Bukkit.getPluginManager().callEvent(e); //TODO: Folia Refactor
+                    if (e.isCancelled()) return;
+                }
 
                 frameTarget = frameTargetList.get(frameTargetIndex);
             }
@@ -674,40 +795,204 @@ public class PlayerEditor {
     }
 
 
-    ArmorStand attemptTarget(ArmorStand armorStand) {
-        if (target == null
-            || !target.isValid()
-            || target.getWorld() != getPlayer().getWorld()
-            || target.getLocation().distanceSquared(getPlayer().getLocation()) > 100)
-            return armorStand;
-        armorStand = target;
+    // The locked target if it is close by, otherwise the clicked stand
+    ArmorStand resolveTarget(ArmorStand armorStand) {
+        if (target != null
+            && target.isValid()
+            && target.getWorld() == getPlayer().getWorld()
+            && target.getLocation().distanceSquared(getPlayer().getLocation()) <= 100)
+            return target;
         return armorStand;
     }
 
+    // Returns null if the click should be ignored. May start a preview, so must run on the thread owning the stand
+    ArmorStand attemptTarget(ArmorStand armorStand) {
+        armorStand = resolveTarget(armorStand);
+        return previewing ? getPreviewStand(armorStand) : armorStand;
+    }
+
+    // While previewing, edits go to the copy of the stand instead. The first stand clicked is the one previewed
+    private synchronized ArmorStand getPreviewStand(ArmorStand armorStand) {
+        if (preview != null && preview.isValid()) {
+            if (armorStand == preview.getClone() || armorStand.equals(preview.getOriginal())) return preview.getClone();
+            sendMessage("previewbusy", "warn", null);
+            return null;
+        }
+        if (PreviewSession.isClone(armorStand)) return null; // Someone else's preview
+        preview = PreviewSession.start(this, armorStand);
+        debug.log("Player '" + getPlayer().getDisplayName() + "' started previewing ArmorStand " + armorStand.getUniqueId());
+        sendMessage("previewstarted", null);
+        return preview.getClone();
+    }
+
+    public void startPreview() {
+        previewing = true;
+        sendMessage("previewon", null);
+    }
+
+    public void commitPreview() {
+        if (!previewing || preview == null) {
+            previewing = false;
+            sendMessage("previewnone", "warn", null);
+            return;
+        }
+        preview.commit(this);
+        preview = null;
+        previewing = false;
+    }
+
+    public void cancelPreview() {
+        if (!previewing) {
+            sendMessage("previewnone", "warn", null);
+            return;
+        }
+        endPreview();
+        sendMessage("previewcancelled", null);
+    }
+
+    // Drops the preview without applying it, such as when the player logs out
+    void endPreview() {
+        if (preview != null) preview.end(this);
+        preview = null;
+        previewing = false;
+    }
+
+    public boolean isPreviewing() {
+        return previewing;
+    }
+
+    // Runs a file from the batch folder, one at a time per player
+    public void runBatch(String fileName, boolean dryRun) {
+        if (batch != null && !batch.isDone()) {
+            sendMessage("batchbusy", "warn", null);
+            return;
+        }
+        try {
+            batch = BatchRun.open(plugin, this, fileName, dryRun);
+        } catch (IOException e) {
+            batch = null;
+        }
+        if (batch == null) {
+            sendMessage("batchnofile", "warn", fileName);
+            return;
+        }
+        debug.log("Player '" + getPlayer().getDisplayName() + "' started batch file '" + fileName + "'" + (dryRun ? " as a dry run" : ""));
+        sendMessage(dryRun ? "batchdryrun" : "batchstarted", fileName);
+        batch.start();
+    }
+
+    public void cancelBatch() {
+        if (batch == null || batch.isDone()) {
+            sendMessage("batchnone", "warn", null);
+            return;
+        }
+        batch.cancel();
+        batch = null;
+        sendMessage("batchcancelled", null);
+    }
+
+    // Stops reading the batch file, such as when the player logs out. The bulk edit of the current line carries on
+    void endBatch() {
+        if (batch != null) batch.stop();
+        batch = null;
+    }
+
     void sendMessage(String path, String format, String option) {
         String message = plugin.getLang().getMessage(path, format, option);
-        if (plugin.sendToActionBar) {
-            if (ArmorStandEditorPlugin.instance().getHasPaper() || ArmorStandEditorPlugin.instance().getHasSpigot()) { //Paper and Spigot having the same Interaction for sendToActionBar
-                plugin.getServer().getPlayer(getUUID()).spigot().sendMessage(ChatMessageType.ACTION_BAR, new TextComponent(message));
+        postToPlayer(() -> {
+            if (plugin.sendToActionBar) {
+                if (Capabilities.PAPER || Capabilities.SPIGOT) { //Paper and Spigot having the same Interaction for sendToActionBar
+                    plugin.getServer().getPlayer(getUUID()).spigot().sendMessage(ChatMessageType.ACTION_BAR, new TextComponent(message));
+                } else {
+                    String rawText = plugin.getLang().getRawMessage(path, format, option);
+                    String command = "minecraft:title %s actionbar %s".formatted(plugin.getServer().getPlayer(getUUID()).getName(), rawText);
+                    Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
+                }
             } else {
-                String rawText = plugin.getLang().getRawMessage(path, format, option);
-                String command = "minecraft:title %s actionbar %s".formatted(plugin.getServer().getPlayer(getUUID()).getName(), rawText);
-                Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
+                plugin.getServer().getPlayer(getUUID()).sendMessage(message);
             }
-        } else {
-            plugin.getServer().getPlayer(getUUID()).sendMessage(message);
-        }
+        });
     }
 
     void sendMessage(String path, String option) {
         sendMessage(path, "info", option);
     }
 
+    // Confirmation shown after an edit has been applied - Skipped while shedding load as the change is already visible
+    void sendFeedback(String path, String option) {
+        if (plugin.sendToActionBar && plugin.getLoadShedder().isShedding(LoadShedder.Level.NO_FEEDBACK)) return;
+        sendMessage(path, option);
+    }
+
+    private void playSound(Sound sound) {
+        postToPlayer(() -> getPlayer().playSound(getPlayer().getLocation(), sound, SoundCategory.PLAYERS, 1.0f, 1.0f));
+    }
+
+    /**
+     * Runs the task on the thread owning the player. Edits run on the stand's region, which on Folia is not
+     * necessarily the player's, so anything sent back to the player (messages, sounds, menus) goes through here.
+     */
+    public void postToPlayer(Runnable task) {
+        Player player = getPlayer();
+        if (player == null) return;
+        Scheduler.executeAtEntity(plugin, player, () -> {
+            if (player.isOnline()) task.run();
+        }, null);
+    }
+
     private void highlight(ArmorStand armorStand) {
+        if (plugin.getLoadShedder().isShedding(LoadShedder.Level.NO_HIGHLIGHT)) return;
         armorStand.removePotionEffect(PotionEffectType.GLOWING);
         armorStand.addPotionEffect(new PotionEffect(PotionEffectType.GLOWING, 50, 1, false, false)); //300 Ticks = 15 seconds
     }
 
+    EditHistory getHistory() {
+        return history;
+    }
+
+    // asedit.history.<n> raises the config limit for a player, the highest granted number wins. Must run on the player's thread
+    private int getHistorySize() {
+        int size = plugin.undoHistorySize;
+        Player player = getPlayer();
+        if (player == null) return size;
+        for (PermissionAttachmentInfo perm : player.getEffectivePermissions()) {
+            String name = perm.getPermission().toLowerCase();
+            if (!perm.getValue() || !name.startsWith("asedit.history.")) continue;
+            try {
+                size = Math.max(size, Integer.parseInt(name.substring("asedit.history.".length())));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return size;
+    }
+
+    public void undo(int steps) {
+        applyHistory(getHistory().undo(steps), "undone", "nothingtoundo");
+    }
+
+    public void redo(int steps) {
+        applyHistory(getHistory().redo(steps), "redone", "nothingtoredo");
+    }
+
+    private void applyHistory(Map<UUID, EditHistory.NetChange> changes, String donePath, String emptyPath) {
+        if (changes.isEmpty()) {
+            sendMessage(emptyPath, "warn", null);
+            return;
+        }
+        int steps = 0;
+        for (Map.Entry<UUID, EditHistory.NetChange> entry : changes.entrySet()) {
+            steps += entry.getValue().getSteps();
+            if (!(Bukkit.getEntity(entry.getKey()) instanceof ArmorStand armorStand)) continue;
+            Scheduler.executeAtEntity(plugin, armorStand, () -> {
+                if (!armorStand.isValid() || !getManager().canEdit(getPlayer(), armorStand)) return;
+                plugin.getCoalescer().flush(armorStand);
+                entry.getValue().apply(armorStand);
+            }, null);
+        }
+        debug.log("Applied " + steps + " history steps to " + changes.size() + " ArmorStands for player " + getPlayer().getDisplayName());
+        sendMessage(donePath, String.valueOf(steps));
+    }
+
     public PlayerEditorManager getManager() {
         return plugin.editorManager;
     }
@@ -721,8 +1006,10 @@ public class PlayerEditor {
     }
 
     public void openMenu() {
+        if (plugin.getDragController().release(getUUID())) return; // Clicking away from the stand puts it down
         if (!isMenuCancelled()) {
-            Scheduler.runTaskLater(plugin, new OpenMenuTask(), 1);
+            Player player = getPlayer();
+            if (player != null) Scheduler.runAtEntityLater(plugin, player, new OpenMenuTask(), null, 1);
         }
     }
 
@@ -741,9 +1028,11 @@ public class PlayerEditor {
             if (isMenuCancelled()) return;
 
             //API: PlayerOpenMenuEvent
-            PlayerOpenMenuEvent event = new PlayerOpenMenuEvent(getPlayer());
-            Bukkit.getPluginManager().callEvent(event); //TODO: Folia Refactor
-            if (event.isCancelled()) return;
+            if (ListenedEvent.PLAYER_OPEN_MENU.isListened()) {
+                PlayerOpenMenuEvent event = new PlayerOpenMenuEvent(getPlayer());
+                Bukkit.getPluginManager().callEvent(event); //TODO: Folia Refactor
+                if (event.isCancelled()) return;
+            }
 
             chestMenu.openMenu();
         }
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableList;
 
 import io.github.rypofalem.armorstandeditor.api.ArmorStandRenameEvent;
 import io.github.rypofalem.armorstandeditor.api.ItemFrameGlowEvent;
+import io.github.rypofalem.armorstandeditor.api.ListenedEvent;
 import io.github.rypofalem.armorstandeditor.menu.ASEHolder;
 import io.github.rypofalem.armorstandeditor.menu.PresetArmorPosesMenu;
 import io.github.rypofalem.armorstandeditor.menu.SizeMenu;
@@ -37,9 +38,13 @@ import org.bukkit.entity.*;
 import org.bukkit.event.*;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.*;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
@@ -219,9 +224,11 @@ public class PlayerEditorManager implements Listener {
                 }
 
                 // API: ArmorStandRenameEvent
-                ArmorStandRenameEvent e = new ArmorStandRenameEvent(as, player, name);
-                Bukkit.getPluginManager().callEvent(e);
-                if (e.isCancelled()) return;
+                if (ListenedEvent.ARMOR_STAND_RENAME.isListened()) {
+                    ArmorStandRenameEvent e = new ArmorStandRenameEvent(as, player, name);
+                    Bukkit.getPluginManager().callEvent(e);
+                    if (e.isCancelled()) return;
+                }
 
                 if (name == null) {
                     as.setCustomName(null);
@@ -233,10 +240,10 @@ public class PlayerEditorManager implements Listener {
                 } else if (!name.equals("")) { // Name tag is not blank
                     event.setCancelled(true);
                     // Delay 1 tick so vanilla rename doesn't overwrite formatting
-                    Scheduler.runTaskLater(plugin, () -> {
+                    Scheduler.runAtEntityLater(plugin, as, () -> {
                         as.setCustomName(name);
                         as.setCustomNameVisible(true);
-                    }, 1);
+                    }, null, 1);
                 }
             }
         } else if (event.getRightClicked() instanceof ItemFrame) {
@@ -257,9 +264,11 @@ public class PlayerEditorManager implements Listener {
                     && player.hasPermission("asedit.basic")
                     && plugin.glowItemFrames && player.isSneaking()) {
 
-                ItemFrameGlowEvent e = new ItemFrameGlowEvent(itemFrame, player);
-                Bukkit.getPluginManager().callEvent(e);
-                if (e.isCancelled()) return;
+                if (ListenedEvent.ITEM_FRAME_GLOW.isListened()) {
+                    ItemFrameGlowEvent e = new ItemFrameGlowEvent(itemFrame, player);
+                    Bukkit.getPluginManager().callEvent(e);
+                    if (e.isCancelled()) return;
+                }
 
                 ItemStack glowSacs = player.getInventory().getItemInMainHand();
                 ItemStack contents = null;
@@ -311,6 +320,22 @@ public class PlayerEditorManager implements Listener {
         }
     }
 
+    // Preview copies must not be broken, looted or drop anything, or their equipment would be duplicated
+    @EventHandler(priority = EventPriority.LOWEST)
+    void onPreviewDamage(EntityDamageEvent event) {
+        if (PreviewSession.isClone(event.getEntity())) event.setCancelled(true); // Edit tool clicks are still handled
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    void onPreviewManipulate(PlayerArmorStandManipulateEvent event) {
+        if (PreviewSession.isClone(event.getRightClicked())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    void onPreviewDeath(EntityDeathEvent event) {
+        if (PreviewSession.isClone(event.getEntity())) event.getDrops().clear();
+    }
+
     // Menu open with the tool: RIGHT clicks only (avoid stealing left-click edits)
     @EventHandler(priority = EventPriority.LOWEST)
     void onRightClickTool(PlayerInteractEvent e) {
@@ -360,7 +385,7 @@ public class PlayerEditorManager implements Listener {
 
         double STEPSIZE = .5;
         Vector STEP = direction.multiply(STEPSIZE);
-        double RANGE = 10;
+        double RANGE = plugin.getLoadShedder().getTargetRange();
         double LASERRADIUS = .3;
         List<Entity> nearbyEntities = player.getNearbyEntities(RANGE, RANGE, RANGE);
         if (nearbyEntities.isEmpty()) return null;
@@ -390,7 +415,7 @@ public class PlayerEditorManager implements Listener {
 
         double STEPSIZE = .5;
         Vector STEP = direction.multiply(STEPSIZE);
-        double RANGE = 10;
+        double RANGE = plugin.getLoadShedder().getTargetRange();
         double LASERRADIUS = .3;
         List<Entity> nearbyEntities = player.getNearbyEntities(RANGE, RANGE, RANGE);
         if (nearbyEntities.isEmpty()) return null;
@@ -413,9 +438,26 @@ public class PlayerEditorManager implements Listener {
         return itemFrames;
     }
 
+    // The stand a command should work on: the locked target if it is close by, otherwise the one being looked at
+    ArmorStand getCommandTarget(Player player) {
+        PlayerEditor pe = getPlayerEditor(player.getUniqueId());
+        ArmorStand target = pe.target;
+        if (target != null && target.isValid() && target.getWorld() == player.getWorld()
+                && target.getLocation().distanceSquared(player.getLocation()) <= 100) return target;
+
+        ArrayList<ArmorStand> targets = getTargets(player);
+        if (targets == null || targets.isEmpty() || PreviewSession.isClone(targets.get(0))) return null;
+        return targets.get(0);
+    }
+
     boolean canEdit(Player player, Entity entity) {
         // Get the Entity being checked for editing
-        Block block = entity.getLocation().getBlock();
+        return canEdit(player, entity.getLocation());
+    }
+
+    // Whether the player may edit (or move a stand to) the given location
+    boolean canEdit(Player player, Location location) {
+        Block block = location.getBlock();
 
         // Check if all protections allow this edit, if one fails, don't allow edit
         return protections.stream().allMatch(protection -> protection.checkPermission(block, player));
@@ -423,20 +465,30 @@ public class PlayerEditorManager implements Listener {
 
     void applyLeftTool(Player player, ArmorStand as) {
         debug.log("Applying Left Tool on ArmorStand for Player: " + player.getDisplayName());
-        getPlayerEditor(player.getUniqueId()).cancelOpenMenu();
-        getPlayerEditor(player.getUniqueId()).editArmorStand(as);
+        PlayerEditor pe = getPlayerEditor(player.getUniqueId());
+        pe.cancelOpenMenu();
+        ArmorStand stand = pe.resolveTarget(as); // A preview is started by the edit itself, on the stand's thread
+        plugin.getGovernor().submit(player.getUniqueId(), () -> Scheduler.executeAtEntity(plugin, stand, () -> {
+            if (stand.isValid() && player.isOnline() && !pe.editSelection(stand, false)) pe.editArmorStand(stand);
+        }, null));
     }
 
     void applyLeftTool(Player player, ItemFrame itemf) {
         debug.log("Applying Left Tool on ItemFrame for Player: " + player.getDisplayName());
-        getPlayerEditor(player.getUniqueId()).cancelOpenMenu();
-        getPlayerEditor(player.getUniqueId()).editItemFrame(itemf);
+        PlayerEditor pe = getPlayerEditor(player.getUniqueId());
+        pe.cancelOpenMenu();
+        plugin.getGovernor().submit(player.getUniqueId(), () -> Scheduler.executeAtEntity(plugin, itemf, () -> {
+            if (itemf.isValid() && player.isOnline()) pe.editItemFrame(itemf);
+        }, null));
     }
 
     void applyRightTool(Player player, ItemFrame itemf) {
         debug.log("Applying Right Tool on ItemFrame for Player: " + player.getDisplayName());
-        getPlayerEditor(player.getUniqueId()).cancelOpenMenu();
-        getPlayerEditor(player.getUniqueId()).editItemFrame(itemf);
+        PlayerEditor pe = getPlayerEditor(player.getUniqueId());
+        pe.cancelOpenMenu();
+        plugin.getGovernor().submit(player.getUniqueId(), () -> Scheduler.executeAtEntity(plugin, itemf, () -> {
+            if (itemf.isValid() && player.isOnline()) pe.editItemFrame(itemf);
+        }, null));
     }
 
     void applyRightTool(Player player, ArmorStand as) {
@@ -445,21 +497,38 @@ public class PlayerEditorManager implements Listener {
         pe.cancelOpenMenu();
 
         EditMode mode = getMode(player.getUniqueId());
+        if (mode == EditMode.SIZE || mode == EditMode.PRESET) {
+            if (!pe.isPreviewing()) {
+                openStandMenu(player, pe, as, mode);
+                return;
+            }
+            // Menus edit the preview copy too, which is set up on the stand's thread
+            ArmorStand clicked = pe.resolveTarget(as);
+            Scheduler.executeAtEntity(plugin, clicked, () -> {
+                ArmorStand copy = clicked.isValid() ? pe.attemptTarget(clicked) : null;
+                if (copy != null) pe.postToPlayer(() -> openStandMenu(player, pe, copy, mode));
+            }, null);
+            return;
+        }
+
+        // Default behavior (reverse pose edit etc.)
+        ArmorStand stand = pe.resolveTarget(as);
+        plugin.getGovernor().submit(player.getUniqueId(), () -> Scheduler.executeAtEntity(plugin, stand, () -> {
+            if (stand.isValid() && player.isOnline() && !pe.editSelection(stand, true)) pe.reverseEditArmorStand(stand);
+        }, null));
+    }
+
+    private void openStandMenu(Player player, PlayerEditor pe, ArmorStand as, EditMode mode) {
         if (mode == EditMode.SIZE) {
             // Ensure click handling has a live menu instance
             pe.sizeModificationMenu = new SizeMenu(pe, as);
             pe.sizeModificationMenu.openMenu();
             setMode(player.getUniqueId(), EditMode.NONE); // FIX: make SIZE a one-shot
-            return;
-        } else if (mode == EditMode.PRESET) {
+        } else {
             pe.presetPoseMenu = new PresetArmorPosesMenu(pe, as);
             pe.presetPoseMenu.openMenu();
             setMode(player.getUniqueId(), EditMode.NONE); // FIX: make PRESET a one-shot
-            return;
         }
-
-        // Default behavior (reverse pose edit etc.)
-        pe.reverseEditArmorStand(as);
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
@@ -560,11 +629,45 @@ public class PlayerEditorManager implements Listener {
         }
     }
 
+    // Other plugins' listeners come and go with them. They are only unregistered after the disable event, hence the delay
+    @EventHandler(priority = EventPriority.MONITOR)
+    void onPluginEnable(PluginEnableEvent e) {
+        ListenedEvent.refresh();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    void onPluginDisable(PluginDisableEvent e) {
+        if (e.getPlugin() != plugin) Scheduler.runTaskLater(plugin, ListenedEvent::refresh, 1);
+    }
+
+    // Hotbar mode: a scroll with the edit tool in hand changes the mode (or axis) instead of the held slot
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
+    void onItemHeld(PlayerItemHeldEvent e) {
+        PlayerEditor pe = players.get(e.getPlayer().getUniqueId());
+        if (pe == null || !pe.isHotbar() || !plugin.isEditTool(e.getPlayer().getInventory().getItem(e.getPreviousSlot()))) return;
+
+        // A scroll moves one slot, wrapping around at the ends. The server can not tell a scroll from a number key,
+        // so a number key for a neighbouring slot (or 1 and 9) counts as a scroll too. Others still change the slot
+        int step = e.getNewSlot() - e.getPreviousSlot();
+        int direction = switch (step) {
+            case 1, -8 -> 1;
+            case -1, 8 -> -1;
+            default -> 0;
+        };
+        if (direction == 0) return;
+        e.setCancelled(true);
+        pe.scrollHotbar(direction, e.getPlayer().isSneaking());
+    }
+
     @EventHandler(priority = EventPriority.MONITOR)
     void onPlayerLogOut(PlayerQuitEvent e) {
         // Clear per-player state on logout
+        plugin.getDragController().release(e.getPlayer().getUniqueId());
+        getPlayerEditor(e.getPlayer().getUniqueId()).endPreview();
+        getPlayerEditor(e.getPlayer().getUniqueId()).endBatch();
         removePlayerEditor(e.getPlayer().getUniqueId());
         clearMode(e.getPlayer().getUniqueId());
+        plugin.getGovernor().clear(e.getPlayer().getUniqueId());
     }
 
     public PlayerEditor getPlayerEditor(UUID uuid) {
@@ -577,6 +680,16 @@ public class PlayerEditorManager implements Listener {
         return pe;
     }
 
+    // Preview copies are not saved, but the real stands should not stay hidden from their editors either
+    void endPreviews() {
+        for (PlayerEditor pe : players.values()) pe.endPreview();
+    }
+
+    // Batch files are not resumed after a restart, so their files should not stay open
+    void endBatches() {
+        for (PlayerEditor pe : players.values()) pe.endBatch();
+    }
+
     private void removePlayerEditor(UUID uuid) {
         players.remove(uuid);
     }
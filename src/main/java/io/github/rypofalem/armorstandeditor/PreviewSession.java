@@ -0,0 +1,175 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.modes.ArmorStandData;
+import io.github.rypofalem.armorstandeditor.modes.Axis;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.EquipmentSlot;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A stand being edited through a copy that only its editor can see. Every intermediate pose and move is sent to the
+ * editor alone, while everyone else keeps seeing the real stand untouched. Committing writes the copy's end state to
+ * the real stand in one go, skipping whatever did not change, and records it as a single undo step.
+ * <p>
+ * The copy is not saved with the world and can not be damaged or have its equipment taken, so nothing can be
+ * duplicated through it.
+ */
+public class PreviewSession {
+
+    private static final Set<UUID> clones = ConcurrentHashMap.newKeySet();
+
+    private final ArmorStandEditorPlugin plugin;
+    private final ArmorStand original;
+    private final ArmorStand clone;
+
+    private PreviewSession(ArmorStandEditorPlugin plugin, ArmorStand original, ArmorStand clone) {
+        this.plugin = plugin;
+        this.original = original;
+        this.clone = clone;
+    }
+
+    /**
+     * Spawns the copy next to the real stand, shows it to the player only and hides the real stand from them.
+     * Must run on the thread owning the real stand.
+     */
+    public static PreviewSession start(PlayerEditor pe, ArmorStand original) {
+        ArmorStandEditorPlugin plugin = pe.plugin;
+        plugin.getCoalescer().flush(original);
+        ArmorStandData data = ArmorStandData.of(original);
+        boolean locked = original.hasEquipmentLock(EquipmentSlot.HAND, ArmorStand.LockType.REMOVING_OR_CHANGING);
+
+        Consumer<ArmorStand> setup = copy -> {
+            copy.setVisibleByDefault(false); // Before it is added to the world, so it is never sent to anyone else
+            copy.setPersistent(false);
+            copy.setSilent(true);
+            copy.setMarker(original.isMarker());
+            copy.setInvulnerable(original.isInvulnerable());
+            copy.setGlowing(original.isGlowing());
+            copy.setCustomName(original.getCustomName());
+            copy.setCustomNameVisible(original.isCustomNameVisible());
+            DiffApplier.apply(copy, data, true);
+            if (locked) StandOperation.lockSlots(copy, true); // Kept off the locked team, which is saved with the world
+        };
+        ArmorStand clone = original.getWorld().spawn(original.getLocation(), ArmorStand.class, setup);
+        clones.add(clone.getUniqueId());
+
+        pe.postToPlayer(() -> {
+            Player player = pe.getPlayer();
+            player.showEntity(plugin, clone);
+            player.hideEntity(plugin, original);
+        });
+        return new PreviewSession(plugin, original, clone);
+    }
+
+    public static boolean isClone(Entity entity) {
+        return clones.contains(entity.getUniqueId());
+    }
+
+    public ArmorStand getOriginal() {
+        return original;
+    }
+
+    public ArmorStand getClone() {
+        return clone;
+    }
+
+    // The copy is gone if its chunk unloaded, since it is not saved
+    public boolean isValid() {
+        return clone.isValid() && original.isValid();
+    }
+
+    /**
+     * Writes the copy's state to the real stand and ends the preview.
+     */
+    public void commit(PlayerEditor pe) {
+        Scheduler.executeAtEntity(plugin, clone, () -> {
+            if (!isValid()) {
+                end(pe);
+                pe.sendMessage("previewlost", "warn", null);
+                return;
+            }
+            plugin.getCoalescer().flush(clone);
+            ArmorStandData data = ArmorStandData.of(clone);
+            Location to = clone.getLocation();
+            boolean glowing = clone.isGlowing();
+            boolean invulnerable = clone.isInvulnerable();
+            boolean locked = clone.hasEquipmentLock(EquipmentSlot.HAND, ArmorStand.LockType.REMOVING_OR_CHANGING);
+
+            Scheduler.executeAtEntity(plugin, original, () -> {
+                if (original.isValid() && pe.getPlayer() != null && pe.getManager().canEdit(pe.getPlayer(), original)) {
+                    apply(pe, data, to, glowing, invulnerable, locked);
+                    pe.sendFeedback("previewcommitted", null);
+                }
+                end(pe);
+            }, () -> end(pe));
+        }, () -> end(pe));
+    }
+
+    private void apply(PlayerEditor pe, ArmorStandData data, Location to, boolean glowing, boolean invulnerable, boolean locked) {
+        plugin.getCoalescer().flush(original);
+        PoseBuffer before = new PoseBuffer(original);
+        Location from = original.getLocation();
+
+        int skipped = DiffApplier.apply(original, data, false); // Equipment can not be changed while previewing
+        if (original.isGlowing() != glowing) original.setGlowing(glowing);
+        if (original.isInvulnerable() != invulnerable) original.setInvulnerable(invulnerable);
+        StandOperation.setSlotsLocked(plugin, original, locked);
+        if (!from.equals(to)) Scheduler.transform(original, to);
+
+        // The whole preview becomes one undo step on the real stand
+        EditHistory history = pe.getHistory();
+        int group = history.newGroup();
+        UUID uuid = original.getUniqueId();
+        for (PosePart part : PosePart.values()) {
+            for (Axis axis : Axis.values()) {
+                double change = data.pose.get(part, axis) - before.get(part, axis);
+                if (change != 0) history.recordPose(uuid, part, axis, change, group);
+            }
+        }
+        if (from.getX() != to.getX() || from.getY() != to.getY() || from.getZ() != to.getZ()) {
+            history.recordMove(uuid, to.getX() - from.getX(), to.getY() - from.getY(), to.getZ() - from.getZ(), group);
+        }
+        float turned = Location.normalizeYaw(to.getYaw() - from.getYaw());
+        if (turned != 0) history.recordRotate(uuid, turned, group);
+        new Debug(plugin).log("Preview committed to ArmorStand " + uuid + ", skipped " + skipped + " unchanged properties");
+    }
+
+    /**
+     * Throws the copy away and shows the real stand again.
+     */
+    public void end(PlayerEditor pe) {
+        Scheduler.executeAtEntity(plugin, clone, () -> {
+            clones.remove(clone.getUniqueId());
+            clone.remove();
+        }, () -> clones.remove(clone.getUniqueId()));
+        pe.postToPlayer(() -> pe.getPlayer().showEntity(plugin, original));
+    }
+}
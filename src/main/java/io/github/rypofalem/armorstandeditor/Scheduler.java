@@ -21,16 +21,90 @@ package io.github.rypofalem.armorstandeditor;
 import io.papermc.lib.PaperLib;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.function.Consumer;
 
 public class Scheduler {
 
-    private static Boolean IS_FOLIA = null;
+    private static final boolean IS_FOLIA = Capabilities.FOLIA;
+
+    // Folia's default region section size, 16x16 chunks. A section always belongs to a single region
+    static final int REGION_SECTION_SHIFT = 4;
+
     private static Object GLOBAL_REGION_SCHEDULER = null;
 
+    // Folia scheduler entry points, bound once when the class loads. All of them return the ScheduledTask as Object
+    private static final MethodHandle GLOBAL_RUN;               // (Plugin, Consumer)
+    private static final MethodHandle GLOBAL_RUN_DELAYED;       // (Plugin, Consumer, long)
+    private static final MethodHandle GLOBAL_RUN_AT_FIXED_RATE; // (Plugin, Consumer, long, long)
+    private static final MethodHandle REGION_RUN;               // (Plugin, Location, Consumer)
+    private static final MethodHandle ENTITY_RUN;               // (Entity, Plugin, Consumer, Runnable)
+    private static final MethodHandle ENTITY_RUN_DELAYED;       // (Entity, Plugin, Consumer, Runnable, long)
+    private static final MethodHandle OWNS_ENTITY;              // (Entity) -> boolean
+    private static final MethodHandle OWNS_CHUNK;               // (World, int, int) -> boolean
+
+    static {
+        if (IS_FOLIA) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Class<?> scheduledTask = Class.forName("io.papermc.paper.threadedregions.scheduler.ScheduledTask");
+                Class<?> globalClass = Class.forName("io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler");
+                Class<?> regionClass = Class.forName("io.papermc.paper.threadedregions.scheduler.RegionScheduler");
+                Class<?> entityClass = Class.forName("io.papermc.paper.threadedregions.scheduler.EntityScheduler");
+
+                Object global = getGlobalRegionScheduler();
+                Object region = lookup.findStatic(Bukkit.class, "getRegionScheduler", MethodType.methodType(regionClass)).invoke();
+
+                GLOBAL_RUN = lookup.findVirtual(globalClass, "run",
+                        MethodType.methodType(scheduledTask, Plugin.class, Consumer.class))
+                    .bindTo(global)
+                    .asType(MethodType.methodType(Object.class, Plugin.class, Consumer.class));
+                GLOBAL_RUN_DELAYED = lookup.findVirtual(globalClass, "runDelayed",
+                        MethodType.methodType(scheduledTask, Plugin.class, Consumer.class, long.class))
+                    .bindTo(global)
+                    .asType(MethodType.methodType(Object.class, Plugin.class, Consumer.class, long.class));
+                GLOBAL_RUN_AT_FIXED_RATE = lookup.findVirtual(globalClass, "runAtFixedRate",
+                        MethodType.methodType(scheduledTask, Plugin.class, Consumer.class, long.class, long.class))
+                    .bindTo(global)
+                    .asType(MethodType.methodType(Object.class, Plugin.class, Consumer.class, long.class, long.class));
+                REGION_RUN = lookup.findVirtual(regionClass, "run",
+                        MethodType.methodType(scheduledTask, Plugin.class, Location.class, Consumer.class))
+                    .bindTo(region)
+                    .asType(MethodType.methodType(Object.class, Plugin.class, Location.class, Consumer.class));
+
+                // entity.getScheduler() is folded into the handle so callers pass the entity itself
+                MethodHandle getScheduler = lookup.findVirtual(Entity.class, "getScheduler", MethodType.methodType(entityClass));
+                ENTITY_RUN = MethodHandles.filterArguments(lookup.findVirtual(entityClass, "run",
+                        MethodType.methodType(scheduledTask, Plugin.class, Consumer.class, Runnable.class)), 0, getScheduler)
+                    .asType(MethodType.methodType(Object.class, Entity.class, Plugin.class, Consumer.class, Runnable.class));
+                ENTITY_RUN_DELAYED = MethodHandles.filterArguments(lookup.findVirtual(entityClass, "runDelayed",
+                        MethodType.methodType(scheduledTask, Plugin.class, Consumer.class, Runnable.class, long.class)), 0, getScheduler)
+                    .asType(MethodType.methodType(Object.class, Entity.class, Plugin.class, Consumer.class, Runnable.class, long.class));
+                OWNS_ENTITY = lookup.findStatic(Bukkit.class, "isOwnedByCurrentRegion",
+                        MethodType.methodType(boolean.class, Entity.class));
+                OWNS_CHUNK = lookup.findStatic(Bukkit.class, "isOwnedByCurrentRegion",
+                        MethodType.methodType(boolean.class, World.class, int.class, int.class));
+            } catch (Throwable t) {
+                throw new IllegalStateException("Unable to bind the Folia schedulers", t);
+            }
+        } else {
+            GLOBAL_RUN = null;
+            GLOBAL_RUN_DELAYED = null;
+            GLOBAL_RUN_AT_FIXED_RATE = null;
+            REGION_RUN = null;
+            ENTITY_RUN = null;
+            ENTITY_RUN_DELAYED = null;
+            OWNS_ENTITY = null;
+            OWNS_CHUNK = null;
+        }
+    }
+
     public static <T> T callMethod(Class<?> clazz, Object object, String methodName, Class<?>[] parameterTypes, Object... args) {
         try {
             return (T) clazz.getDeclaredMethod(methodName, parameterTypes).invoke(object, args);
@@ -56,14 +130,8 @@ public class Scheduler {
         return false;
     }
 
-    public static Boolean isFolia() {
-        try {
-            Class.forName("io.papermc.paper.threadedregions.ThreadedRegionizer");
-        }
-        catch (Exception e) {
-            return false;
-        }
-        return true;
+    public static boolean isFolia() {
+        return IS_FOLIA;
     }
 
     public static Object getGlobalRegionScheduler() {
@@ -74,36 +142,149 @@ public class Scheduler {
     }
 
     public static void runTask(Plugin plugin, Runnable runnable) {
-        if (isFolia()) {
-            Object globalRegionScheduler = getGlobalRegionScheduler();
-            callMethod(globalRegionScheduler, "run", new Class[]{Plugin.class, Consumer.class}, plugin, (Consumer<?>) (task) -> runnable.run());
+        if (IS_FOLIA) {
+            Consumer<Object> task = scheduled -> runnable.run();
+            try {
+                Object ignored = (Object) GLOBAL_RUN.invokeExact(plugin, (Consumer) task);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
             return;
         }
         Bukkit.getScheduler().runTask(plugin, runnable);
     }
 
     public static void runTaskTimer(Plugin plugin, Runnable runnable, long initialDelayTicks, long periodTicks) {
-        if (isFolia()) {
-            Object globalRegionScheduler = getGlobalRegionScheduler();
-            callMethod(globalRegionScheduler, "runAtFixedRate", new Class[]{Plugin.class, Consumer.class, long.class, long.class},
-                plugin, (Consumer<?>) (task) -> runnable.run(), initialDelayTicks, periodTicks);
+        if (IS_FOLIA) {
+            Consumer<Object> task = scheduled -> runnable.run();
+            try {
+                Object ignored = (Object) GLOBAL_RUN_AT_FIXED_RATE.invokeExact(plugin, (Consumer) task, initialDelayTicks, periodTicks);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
             return;
         }
         Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, runnable, initialDelayTicks, periodTicks);
     }
 
+    // Same as runTaskTimer, but stays on the main thread when not on Folia so the task may touch entities
+    public static void runSyncTaskTimer(Plugin plugin, Runnable runnable, long initialDelayTicks, long periodTicks) {
+        if (IS_FOLIA) {
+            runTaskTimer(plugin, runnable, initialDelayTicks, periodTicks);
+            return;
+        }
+        Bukkit.getScheduler().runTaskTimer(plugin, runnable, initialDelayTicks, periodTicks);
+    }
+
     public static void runTaskLater(Plugin plugin, Runnable runnable, long delayedTicks) {
-        if (isFolia()) {
-            Object globalRegionScheduler = getGlobalRegionScheduler();
-            callMethod(globalRegionScheduler, "runDelayed", new Class[]{Plugin.class, Consumer.class, long.class},
-                plugin, (Consumer<?>) (task) -> runnable.run(), delayedTicks);
+        if (IS_FOLIA) {
+            Consumer<Object> task = scheduled -> runnable.run();
+            try {
+                Object ignored = (Object) GLOBAL_RUN_DELAYED.invokeExact(plugin, (Consumer) task, delayedTicks);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            return;
+        }
+        Bukkit.getScheduler().runTaskLater(plugin, runnable, delayedTicks);
+    }
+
+    // Runs on the thread owning the location's region. Outside of Folia that is simply the main thread
+    public static void runAtLocation(Plugin plugin, Location location, Runnable runnable) {
+        if (IS_FOLIA) {
+            Consumer<Object> task = scheduled -> runnable.run();
+            try {
+                Object ignored = (Object) REGION_RUN.invokeExact(plugin, location, (Consumer) task);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, runnable);
+    }
+
+    // Runs on the thread owning the entity. retired runs instead if the entity is removed before the task gets to run
+    public static void runAtEntity(Plugin plugin, Entity entity, Runnable runnable, Runnable retired) {
+        if (IS_FOLIA) {
+            Consumer<Object> task = scheduled -> runnable.run();
+            try {
+                Object scheduled = (Object) ENTITY_RUN.invokeExact(entity, plugin, (Consumer) task, retired);
+                if (scheduled == null && retired != null) retired.run(); // Entity was already removed
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, runnable);
+    }
+
+    public static void runAtEntityLater(Plugin plugin, Entity entity, Runnable runnable, Runnable retired, long delayedTicks) {
+        if (IS_FOLIA) {
+            Consumer<Object> task = scheduled -> runnable.run();
+            try {
+                Object scheduled = (Object) ENTITY_RUN_DELAYED.invokeExact(entity, plugin, (Consumer) task, retired, delayedTicks);
+                if (scheduled == null && retired != null) retired.run();
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
             return;
         }
         Bukkit.getScheduler().runTaskLater(plugin, runnable, delayedTicks);
     }
 
+    // True when the calling thread may touch the entity right now. Outside of Folia that means the main thread
+    public static boolean isOwnedByCurrentRegion(Entity entity) {
+        if (IS_FOLIA) {
+            try {
+                return (boolean) OWNS_ENTITY.invokeExact(entity);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        return Bukkit.isPrimaryThread();
+    }
+
+    // The same for the chunk at the chunk coordinates
+    public static boolean isOwnedByCurrentRegion(World world, int chunkX, int chunkZ) {
+        if (IS_FOLIA) {
+            try {
+                return (boolean) OWNS_CHUNK.invokeExact(world, chunkX, chunkZ);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        return Bukkit.isPrimaryThread();
+    }
+
+    // Runs straight away when the calling thread already owns the entity, otherwise hands it to the entity's scheduler
+    public static void executeAtEntity(Plugin plugin, Entity entity, Runnable runnable, Runnable retired) {
+        if (isOwnedByCurrentRegion(entity)) {
+            runnable.run();
+            return;
+        }
+        runAtEntity(plugin, entity, runnable, retired);
+    }
+
     public static void teleport(Entity entity, Location location) {
-        if (isFolia()) PaperLib.teleportAsync(entity, location);
+        if (IS_FOLIA) PaperLib.teleportAsync(entity, location);
         else entity.teleport(location);
     }
+
+    /**
+     * Moves and/or turns an entity using the cheapest call that does the job. Must be called on the thread owning the entity.
+     * Turning in place only needs setRotation; anything that changes the position goes through teleport.
+     */
+    public static void transform(Entity entity, Location location) {
+        Location current = entity.getLocation();
+        if (current.getWorld() != location.getWorld()) {
+            teleport(entity, location);
+            return;
+        }
+
+        if (current.getX() == location.getX() && current.getY() == location.getY() && current.getZ() == location.getZ()) {
+            entity.setRotation(location.getYaw(), location.getPitch());
+            return;
+        }
+        teleport(entity, location);
+    }
 }
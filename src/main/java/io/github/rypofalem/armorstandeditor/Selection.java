@@ -0,0 +1,156 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The ArmorStands a player has selected to edit as a group. Stands are kept as UUIDs grouped by the chunk they were in,
+ * so an edit to the selection can visit it one chunk (and on Folia one region) at a time instead of looking up
+ * every stand on its own. A selection only holds stands from one world at a time.
+ * <p>
+ * Selections are changed from both the player's and the stands' threads, so every method is synchronized.
+ */
+public class Selection {
+
+    private final Map<Long, Set<UUID>> chunks = new HashMap<>();
+    private final Map<UUID, Long> chunkOf = new HashMap<>();
+    private UUID world;
+    private Location pos1;
+    private Location pos2;
+
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static long chunkKey(Location location) {
+        return chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    public static int chunkX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int chunkZ(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Adds the stand, starting over if it is in another world than the current selection.
+     * Returns false if it was already selected.
+     */
+    public synchronized boolean add(Entity entity) {
+        Location loc = entity.getLocation();
+        UUID worldId = loc.getWorld().getUID();
+        if (!worldId.equals(world)) {
+            clearStands();
+            world = worldId;
+        }
+        if (chunkOf.containsKey(entity.getUniqueId())) return false;
+        long key = chunkKey(loc);
+        chunkOf.put(entity.getUniqueId(), key);
+        chunks.computeIfAbsent(key, k -> new HashSet<>()).add(entity.getUniqueId());
+        return true;
+    }
+
+    public synchronized boolean remove(UUID uuid) {
+        Long key = chunkOf.remove(uuid);
+        if (key == null) return false;
+        Set<UUID> stands = chunks.get(key);
+        stands.remove(uuid);
+        if (stands.isEmpty()) chunks.remove(key);
+        return true;
+    }
+
+    public synchronized boolean contains(UUID uuid) {
+        return chunkOf.containsKey(uuid);
+    }
+
+    /**
+     * Moves a selected stand to the chunk of its new location, so the next edit still finds it.
+     */
+    public synchronized void relocate(UUID uuid, Location location) {
+        Long key = chunkOf.get(uuid);
+        long newKey = chunkKey(location);
+        if (key == null || key == newKey) return;
+        remove(uuid);
+        chunkOf.put(uuid, newKey);
+        chunks.computeIfAbsent(newKey, k -> new HashSet<>()).add(uuid);
+    }
+
+    /**
+     * A copy of the selection by chunk key, safe to hand to other threads.
+     */
+    public synchronized Map<Long, UUID[]> snapshot() {
+        Map<Long, UUID[]> copy = new LinkedHashMap<>();
+        for (Map.Entry<Long, Set<UUID>> entry : chunks.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().toArray(new UUID[0]));
+        }
+        return copy;
+    }
+
+    public synchronized void clear() {
+        clearStands();
+        pos1 = null;
+        pos2 = null;
+    }
+
+    private void clearStands() {
+        chunks.clear();
+        chunkOf.clear();
+        world = null;
+    }
+
+    public synchronized int size() {
+        return chunkOf.size();
+    }
+
+    public synchronized int getChunkCount() {
+        return chunks.size();
+    }
+
+    public synchronized UUID getWorld() {
+        return world;
+    }
+
+    public synchronized Location getPos1() {
+        return pos1 == null ? null : pos1.clone();
+    }
+
+    public synchronized void setPos1(Location pos1) {
+        this.pos1 = pos1.clone();
+    }
+
+    public synchronized Location getPos2() {
+        return pos2 == null ? null : pos2.clone();
+    }
+
+    public synchronized void setPos2(Location pos2) {
+        this.pos2 = pos2.clone();
+    }
+}
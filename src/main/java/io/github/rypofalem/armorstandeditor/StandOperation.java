@@ -0,0 +1,301 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor;
+
+import io.github.rypofalem.armorstandeditor.api.StandDelta;
+import io.github.rypofalem.armorstandeditor.modes.AdjustmentMode;
+import io.github.rypofalem.armorstandeditor.modes.ArmorStandData;
+import io.github.rypofalem.armorstandeditor.modes.Axis;
+import io.github.rypofalem.armorstandeditor.modes.EditMode;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.scoreboard.Team;
+
+/**
+ * One click of the edit tool captured with everything it depends on (mode, axis, step sizes and for toggles the
+ * value to set), so the same edit can be applied to any number of stands afterwards.
+ * <p>
+ * Toggles take their new value from the clicked stand and set it on every stand, so a mixed selection ends up
+ * uniform instead of every stand flipping on its own.
+ */
+public class StandOperation {
+
+    private final ArmorStandEditorPlugin plugin;
+    private final EditMode mode;
+    private final Axis axis;
+    private final boolean reverse;
+    private final double eulerAngleChange;
+    private final double degreeAngleChange;
+    private final double movChange;
+    private final boolean value;
+    private final ArmorStandData pasteData;
+    private final boolean pasteEquipment;
+
+    private StandOperation(PlayerEditor pe, ArmorStand clicked, boolean reverse) {
+        this.plugin = pe.plugin;
+        this.mode = pe.eMode;
+        this.axis = pe.axis;
+        this.reverse = reverse;
+        this.eulerAngleChange = pe.eulerAngleChange;
+        this.degreeAngleChange = pe.degreeAngleChange;
+        this.movChange = pe.movChange;
+        this.pasteData = mode == EditMode.PASTE ? pe.copySlots.getDataToPaste() : null;
+        this.pasteEquipment = pe.getPlayer().getGameMode() == GameMode.CREATIVE;
+        this.value = switch (mode) {
+            case SHOWARMS -> !clicked.hasArms();
+            case INVISIBLE -> !clicked.isVisible();
+            case BASEPLATE -> !clicked.hasBasePlate();
+            case GRAVITY -> !clicked.hasGravity();
+            case VULNERABILITY -> !clicked.isInvulnerable();
+            case GLOWING -> !clicked.isGlowing();
+            case SIZE -> !clicked.isSmall();
+            case DISABLESLOTS -> !clicked.hasEquipmentLock(EquipmentSlot.HAND, ArmorStand.LockType.REMOVING_OR_CHANGING);
+            default -> false;
+        };
+    }
+
+    /**
+     * Captures the player's current edit, or returns null if the mode only makes sense on a single stand
+     * (menus, copy...) or the player lacks the permission for it.
+     */
+    public static StandOperation of(PlayerEditor pe, ArmorStand clicked, boolean reverse) {
+        Player player = pe.getPlayer();
+        if (player == null || !canApply(pe.plugin, pe.eMode, player)) return null;
+        StandOperation operation = new StandOperation(pe, clicked, reverse);
+        if (operation.mode == EditMode.PASTE && operation.pasteData == null) return null;
+        return operation;
+    }
+
+    // Whether the player may use the mode on stands, also used to skip modes in hotbar mode
+    static boolean canApply(ArmorStandEditorPlugin plugin, EditMode mode, Player player) {
+        if (PosePart.fromEditMode(mode) != null) return player.hasPermission("asedit.basic");
+        return switch (mode) {
+            case PLACEMENT -> player.hasPermission("asedit.movement");
+            case ROTATE -> player.hasPermission("asedit.rotation");
+            case SHOWARMS -> player.hasPermission("asedit.togglearms");
+            case INVISIBLE -> player.hasPermission("asedit.togglearmorstandvisibility") || plugin.getArmorStandVisibility();
+            case BASEPLATE -> player.hasPermission("asedit.togglebaseplate");
+            case GRAVITY -> player.hasPermission("asedit.togglegravity");
+            case VULNERABILITY -> player.hasPermission("asedit.toggleInvulnerability");
+            case GLOWING -> player.hasPermission("asedit.togglearmorstandglow");
+            case SIZE -> player.hasPermission("asedit.togglesize") && !Capabilities.SCALE_ATTRIBUTE; // The scale menu is per stand
+            case DISABLESLOTS -> player.hasPermission("asedit.disableSlots");
+            case PASTE -> player.hasPermission("asedit.paste");
+            case RESET -> player.hasPermission("asedit.reset");
+            default -> false;
+        };
+    }
+
+    private StandOperation(ArmorStandEditorPlugin plugin, EditMode mode, Axis axis, boolean reverse, double eulerAngleChange, double movChange, boolean value) {
+        this.plugin = plugin;
+        this.mode = mode;
+        this.axis = axis;
+        this.reverse = reverse;
+        this.eulerAngleChange = eulerAngleChange;
+        this.degreeAngleChange = eulerAngleChange / Math.PI * 180;
+        this.movChange = movChange;
+        this.value = value;
+        this.pasteData = null;
+        this.pasteEquipment = false;
+    }
+
+    /**
+     * An edit spelled out in full instead of taken from a click, as in batch files. Toggles set the given value.
+     * Returns null for paste (it needs a copied stand), for modes that only work on a single stand
+     * and for modes the player lacks the permission for.
+     */
+    public static StandOperation of(PlayerEditor pe, EditMode mode, Axis axis, AdjustmentMode adjustment, boolean reverse, boolean value) {
+        Player player = pe.getPlayer();
+        if (player == null || mode == EditMode.PASTE || !canApply(pe.plugin, mode, player)) return null;
+        PlayerEditorManager manager = pe.getManager();
+        boolean coarse = adjustment == AdjustmentMode.COARSE;
+        return new StandOperation(pe.plugin, mode, axis, reverse, coarse ? manager.coarseAdj : manager.fineAdj, coarse ? manager.coarseMov : manager.fineMov, value);
+    }
+
+    private StandOperation(ArmorStandEditorPlugin plugin, ConfigurationSection section) {
+        this.plugin = plugin;
+        this.mode = EditMode.valueOf(section.getString("mode"));
+        this.axis = Axis.valueOf(section.getString("axis"));
+        this.reverse = section.getBoolean("reverse");
+        this.eulerAngleChange = section.getDouble("eulerAngleChange");
+        this.degreeAngleChange = section.getDouble("degreeAngleChange");
+        this.movChange = section.getDouble("movChange");
+        this.value = section.getBoolean("value");
+        ConfigurationSection paste = section.getConfigurationSection("paste");
+        this.pasteData = paste == null ? null : ArmorStandData.load(paste);
+        this.pasteEquipment = section.getBoolean("pasteEquipment");
+    }
+
+    // Bulk edits are saved across restarts, so the operation has to be as well
+    public void save(ConfigurationSection section) {
+        section.set("mode", mode.name());
+        section.set("axis", axis.name());
+        section.set("reverse", reverse);
+        section.set("eulerAngleChange", eulerAngleChange);
+        section.set("degreeAngleChange", degreeAngleChange);
+        section.set("movChange", movChange);
+        section.set("value", value);
+        if (pasteData != null) pasteData.save(section.createSection("paste"));
+        section.set("pasteEquipment", pasteEquipment);
+    }
+
+    /**
+     * Reads an operation written by save, or returns null if it can not be read (such as a mode that no longer exists).
+     */
+    public static StandOperation load(ArmorStandEditorPlugin plugin, ConfigurationSection section) {
+        try {
+            StandOperation operation = new StandOperation(plugin, section);
+            if (operation.mode == EditMode.PASTE && operation.pasteData == null) return null;
+            return operation;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    public EditMode getMode() {
+        return mode;
+    }
+
+    /**
+     * What applying the edit to the stand would change, without changing it. Must run on the thread owning the stand.
+     */
+    public StandDelta describe(ArmorStand armorStand) {
+        PosePart part = PosePart.fromEditMode(mode);
+        if (part != null) {
+            double before = plugin.getCoalescer().getPose(armorStand, part, axis);
+            double after = reverse ? Util.addAngle(before, eulerAngleChange) : Util.subAngle(before, eulerAngleChange);
+            return StandDelta.pose(armorStand, mode, part, axis, before, after);
+        }
+
+        Location from = plugin.getCoalescer().getLocation(armorStand);
+        return switch (mode) {
+            case PLACEMENT -> {
+                double distance = reverse ? -movChange : movChange;
+                yield StandDelta.move(armorStand, from, from.clone().add(axis == Axis.X ? distance : 0, axis == Axis.Y ? distance : 0, axis == Axis.Z ? distance : 0));
+            }
+            case ROTATE -> {
+                Location to = from.clone();
+                to.setYaw(Location.normalizeYaw(from.getYaw() + (float) (reverse ? -degreeAngleChange : degreeAngleChange)));
+                yield StandDelta.rotate(armorStand, from, to);
+            }
+            default -> StandDelta.property(armorStand, mode);
+        };
+    }
+
+    /**
+     * Applies the edit to one stand, recording undoable changes in the history under the given group.
+     * Must run on the thread owning the stand.
+     */
+    public void apply(ArmorStand armorStand, EditHistory history, int group) {
+        PosePart part = PosePart.fromEditMode(mode);
+        if (part != null) {
+            double change = plugin.getCoalescer().adjustPose(armorStand, part, axis, eulerAngleChange, reverse);
+            if (change != 0) history.recordPose(armorStand.getUniqueId(), part, axis, change, group);
+            return;
+        }
+
+        switch (mode) {
+            case PLACEMENT -> {
+                double distance = reverse ? -movChange : movChange;
+                double dx = axis == Axis.X ? distance : 0;
+                double dy = axis == Axis.Y ? distance : 0;
+                double dz = axis == Axis.Z ? distance : 0;
+                plugin.getCoalescer().setLocation(armorStand, plugin.getCoalescer().getLocation(armorStand).add(dx, dy, dz));
+                history.recordMove(armorStand.getUniqueId(), dx, dy, dz, group);
+            }
+            case ROTATE -> {
+                double degrees = reverse ? -degreeAngleChange : degreeAngleChange;
+                Location loc = plugin.getCoalescer().getLocation(armorStand);
+                loc.setYaw(Location.normalizeYaw(loc.getYaw() + (float) degrees));
+                plugin.getCoalescer().setLocation(armorStand, loc);
+                history.recordRotate(armorStand.getUniqueId(), degrees, group);
+            }
+            default -> {
+                plugin.getCoalescer().flush(armorStand);
+                applyProperty(armorStand);
+            }
+        }
+    }
+
+    private void applyProperty(ArmorStand armorStand) {
+        switch (mode) {
+            case SHOWARMS -> {
+                if (armorStand.hasArms() != value) armorStand.setArms(value);
+            }
+            case INVISIBLE -> {
+                if (armorStand.isVisible() != value) armorStand.setVisible(value);
+            }
+            case BASEPLATE -> {
+                if (armorStand.hasBasePlate() != value) armorStand.setBasePlate(value);
+            }
+            case GRAVITY -> {
+                if (armorStand.hasGravity() != value) armorStand.setGravity(value);
+            }
+            case VULNERABILITY -> {
+                if (armorStand.isInvulnerable() != value) armorStand.setInvulnerable(value);
+            }
+            case GLOWING -> {
+                if (armorStand.isGlowing() != value) armorStand.setGlowing(value);
+            }
+            case SIZE -> {
+                if (armorStand.isSmall() != value) armorStand.setSmall(value);
+            }
+            case DISABLESLOTS -> setSlotsLocked(plugin, armorStand, value);
+            case PASTE -> DiffApplier.apply(armorStand, pasteData, pasteEquipment);
+            case RESET -> DiffApplier.applyPoses(armorStand, PlayerEditor.RESET_POSE);
+            default -> {
+            }
+        }
+    }
+
+    // Locks or unlocks every equipment slot, keeping the locked team (used for the lock glow colour) in step.
+    // Returns false if the slots already were that way
+    static boolean setSlotsLocked(ArmorStandEditorPlugin plugin, ArmorStand armorStand, boolean value) {
+        if (armorStand.hasEquipmentLock(EquipmentSlot.HAND, ArmorStand.LockType.REMOVING_OR_CHANGING) == value) return false;
+        lockSlots(armorStand, value);
+
+        Team team = Scheduler.isFolia() ? null : plugin.scoreboard.getTeam(plugin.lockedTeam);
+        if (team == null) return true;
+        if (value) {
+            team.addEntry(armorStand.getUniqueId().toString());
+        } else {
+            team.removeEntry(armorStand.getUniqueId().toString());
+        }
+        return true;
+    }
+
+    // Only the locks, leaving the team alone. For stands that are not saved, such as preview copies
+    static void lockSlots(ArmorStand armorStand, boolean value) {
+        for (final EquipmentSlot slot : EquipmentSlot.values()) {
+            if (value) {
+                armorStand.addEquipmentLock(slot, ArmorStand.LockType.REMOVING_OR_CHANGING);
+                armorStand.addEquipmentLock(slot, ArmorStand.LockType.ADDING);
+            } else {
+                armorStand.removeEquipmentLock(slot, ArmorStand.LockType.REMOVING_OR_CHANGING);
+                armorStand.removeEquipmentLock(slot, ArmorStand.LockType.ADDING);
+            }
+        }
+    }
+}
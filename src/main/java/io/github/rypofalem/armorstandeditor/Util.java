@@ -50,6 +50,20 @@ public abstract class Util {
         return current;
     }
 
+    // The same angle within 0 to 2PI rad
+    public static double wrapAngle(double angle) {
+        angle %= FULL_CIRCLE;
+        return angle < 0 ? angle + FULL_CIRCLE : angle;
+    }
+
+    // How far to turn from one angle to reach the other the short way round, between -PI and PI rad
+    public static double angleDifference(double from, double to) {
+        double delta = (to - from) % FULL_CIRCLE;
+        if (delta > Math.PI) return delta - FULL_CIRCLE;
+        if (delta < -Math.PI) return delta + FULL_CIRCLE;
+        return delta;
+    }
+
     //clamps angle to 0 if it exceeds 2PI rad (360 degrees), is closer to 0 than angleChange value, or is closer to 2PI rad than 2PI rad - angleChange value.
     private static double fixAngle(double angle, double angleChange) {
         if (angle > FULL_CIRCLE) {
@@ -0,0 +1,157 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.github.rypofalem.armorstandeditor.animation;
+
+import io.github.rypofalem.armorstandeditor.Util;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import org.bukkit.Location;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A named animation made of keyframes. The keyframes are interpolated into one frame per tick once, when the clip is
+ * created, so playing it is just a lookup and every stand playing the clip shares the same frames no matter how many
+ * there are. The clip loops back to its first frame after the last keyframe.
+ * <p>
+ * There are {@link #CHANNELS} channels: the 18 pose angles (indexed like {@link PoseBuffer}), the offset from the
+ * stand's origin relative to the way the origin faces, and the change in yaw in degrees. The frames are stored one
+ * channel after another, so a run of frames between two keyframes is one contiguous loop, and are kept in direct
+ * memory once baked.
+ */
+public final class AnimationClip {
+    public static final int OFFSET_X = PoseBuffer.SIZE;
+    public static final int OFFSET_Y = PoseBuffer.SIZE + 1;
+    public static final int OFFSET_Z = PoseBuffer.SIZE + 2;
+    public static final int YAW = PoseBuffer.SIZE + 3;
+    public static final int CHANNELS = PoseBuffer.SIZE + 4;
+
+    private final String name;
+    private final List<Keyframe> keyframes;
+    private final int length;
+    private final DoubleBuffer frames;
+
+    /**
+     * @param keyframes at least two, the first one on tick 0
+     */
+    public AnimationClip(String name, List<Keyframe> keyframes) {
+        List<Keyframe> sorted = new ArrayList<>(keyframes);
+        sorted.sort(Comparator.comparingInt(Keyframe::getTick));
+        if (sorted.size() < 2 || sorted.get(0).getTick() != 0) throw new IllegalArgumentException("A clip needs at least two keyframes, starting on tick 0");
+
+        this.name = name;
+        this.keyframes = Collections.unmodifiableList(sorted);
+        this.length = sorted.get(sorted.size() - 1).getTick() + 1;
+        double[] baked = new double[length * CHANNELS];
+        bake(baked);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(baked.length * Double.BYTES).order(ByteOrder.nativeOrder());
+        this.frames = buffer.asDoubleBuffer().put(baked).asReadOnlyBuffer();
+    }
+
+    private void bake(double[] frames) {
+        for (int k = 0; k + 1 < keyframes.size(); k++) {
+            Keyframe from = keyframes.get(k);
+            Keyframe to = keyframes.get(k + 1);
+            int span = to.getTick() - from.getTick();
+            for (int c = 0; c < CHANNELS; c++) {
+                boolean angle = c < PoseBuffer.SIZE;
+                double start = angle ? Util.wrapAngle(from.get(c)) : from.get(c);
+                double delta;
+                if (angle) {
+                    delta = Util.angleDifference(start, to.get(c));
+                } else if (c == YAW) {
+                    delta = Location.normalizeYaw((float) (to.get(c) - start));
+                } else {
+                    delta = to.get(c) - start;
+                }
+                interpolate(frames, c * length + from.getTick(), span, start, delta, angle);
+            }
+        }
+
+        Keyframe last = keyframes.get(keyframes.size() - 1);
+        for (int c = 0; c < CHANNELS; c++) {
+            frames[c * length + length - 1] = c < PoseBuffer.SIZE ? Util.wrapAngle(last.get(c)) : last.get(c);
+        }
+    }
+
+    // Sets out[offset + t] = from + delta * t / span for t from 0 to span - 1, angles kept within 0 to 2PI rad
+    private static void interpolate(double[] out, int offset, int span, double from, double delta, boolean angle) {
+        double step = delta / span;
+        for (int t = 0; t < span; t++) {
+            double value = step * t + from;
+            if (angle) {
+                if (value < 0) value += Util.FULL_CIRCLE;
+                else if (value >= Util.FULL_CIRCLE) value -= Util.FULL_CIRCLE;
+            }
+            out[offset + t] = value;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Keyframe> getKeyframes() {
+        return keyframes;
+    }
+
+    // Number of frames (ticks) before the clip starts over
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Every channel's frames back to back, the value of channel {@code c} on frame {@code f} being at
+     * {@code c * getLength() + f}. Read with the absolute get methods, the buffer is shared by everything playing
+     * the clip.
+     */
+    public DoubleBuffer getFrames() {
+        return frames;
+    }
+
+    public void save(ConfigurationSection section) {
+        for (Keyframe keyframe : keyframes) section.set(String.valueOf(keyframe.getTick()), keyframe.toList());
+    }
+
+    // Null if the section does not hold a usable clip
+    public static AnimationClip load(String name, ConfigurationSection section) {
+        List<Keyframe> keyframes = new ArrayList<>();
+        for (String key : section.getKeys(false)) {
+            Keyframe keyframe;
+            try {
+                keyframe = Keyframe.fromList(Integer.parseInt(key), section.getDoubleList(key));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (keyframe == null) return null;
+            keyframes.add(keyframe);
+        }
+        try {
+            return new AnimationClip(name, keyframes);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.github.rypofalem.armorstandeditor.animation;
+
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+
+import java.util.List;
+
+/**
+ * One recorded state of an animation: the tick it is reached on and a value for every channel of
+ * {@link AnimationClip}. The offset is kept relative to the way the recorded stand was facing, so a clip can be
+ * played on stands facing any direction.
+ */
+public final class Keyframe {
+    private final int tick;
+    private final double[] values;
+
+    public Keyframe(int tick, double[] values) {
+        if (values.length != AnimationClip.CHANNELS) throw new IllegalArgumentException("Expected " + AnimationClip.CHANNELS + " values, got " + values.length);
+        this.tick = tick;
+        this.values = values;
+    }
+
+    /**
+     * Reads the stand's pose and where it is compared to the origin. Must be called on the thread owning the stand.
+     */
+    public static Keyframe capture(int tick, ArmorStand armorStand, Location origin) {
+        double[] values = new double[AnimationClip.CHANNELS];
+        System.arraycopy(new PoseBuffer(armorStand).array(), 0, values, 0, PoseBuffer.SIZE);
+
+        Location location = armorStand.getLocation();
+        double dx = location.getX() - origin.getX();
+        double dz = location.getZ() - origin.getZ();
+        double yaw = Math.toRadians(origin.getYaw());
+        double cos = Math.cos(yaw);
+        double sin = Math.sin(yaw);
+        values[AnimationClip.OFFSET_X] = dx * cos + dz * sin;
+        values[AnimationClip.OFFSET_Y] = location.getY() - origin.getY();
+        values[AnimationClip.OFFSET_Z] = dz * cos - dx * sin;
+        values[AnimationClip.YAW] = Location.normalizeYaw(location.getYaw() - origin.getYaw());
+        return new Keyframe(tick, values);
+    }
+
+    // The same state reached on another tick
+    public Keyframe at(int tick) {
+        return new Keyframe(tick, values.clone());
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public double get(int channel) {
+        return values[channel];
+    }
+
+    List<Double> toList() {
+        Double[] boxed = new Double[values.length];
+        for (int i = 0; i < values.length; i++) boxed[i] = values[i];
+        return List.of(boxed);
+    }
+
+    static Keyframe fromList(int tick, List<Double> list) {
+        if (list.size() != AnimationClip.CHANNELS) return null;
+        double[] values = new double[list.size()];
+        for (int i = 0; i < values.length; i++) values[i] = list.get(i);
+        return new Keyframe(tick, values);
+    }
+}
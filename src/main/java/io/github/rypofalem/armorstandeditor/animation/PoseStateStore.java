@@ -0,0 +1,162 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.github.rypofalem.armorstandeditor.animation;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The playback state of every animated stand, kept outside the Java heap so tens of thousands of animated stands
+ * don't add tens of thousands of objects for the garbage collector to walk. Each stand gets a slot id when its chunk
+ * loads and hands it back when the chunk unloads; freed ids are reused first so the store stays compact.
+ * <p>
+ * Slots live in fixed-size pages of direct memory, each laid out one column after another (all origin x values,
+ * then all origin y values and so on). Pages are never moved or copied once made, so growing the store cannot lose
+ * a write made on another thread. Allocating and releasing slots is synchronized; reading and writing a slot is not,
+ * and must only be done on the thread that owns the stand.
+ */
+public final class PoseStateStore {
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT; // Slots per page
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Double columns
+    private static final int ORIGIN_X = 0;
+    private static final int ORIGIN_Y = 1;
+    private static final int ORIGIN_Z = 2;
+    private static final int ORIGIN_YAW = 3;
+    private static final int COS = 4; // Of the origin's yaw, used to turn clip offsets into world offsets
+    private static final int SIN = 5;
+    private static final int DOUBLE_COLUMNS = 6;
+
+    // Byte offsets of each column in a page
+    private static final int CHUNK_OFFSET = DOUBLE_COLUMNS * PAGE_SIZE * Double.BYTES;
+    private static final int FRAME_OFFSET = CHUNK_OFFSET + PAGE_SIZE * Long.BYTES;
+    private static final int PAGE_BYTES = FRAME_OFFSET + PAGE_SIZE * Integer.BYTES;
+
+    private volatile ByteBuffer[] pages = new ByteBuffer[0];
+    private int[] free = new int[16]; // Released slots, reused last in first out
+    private int freeCount;
+    private int next; // Lowest slot never handed out
+    private int used;
+
+    /**
+     * Takes a slot for a stand starting from the given origin in the given chunk, with no frame applied yet.
+     */
+    public synchronized int allocate(Location origin, long chunk) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            slot = next++;
+            if (slot >> PAGE_SHIFT >= pages.length) {
+                ByteBuffer[] grown = Arrays.copyOf(pages, pages.length + 1);
+                grown[pages.length] = ByteBuffer.allocateDirect(PAGE_BYTES).order(ByteOrder.nativeOrder());
+                pages = grown;
+            }
+        }
+        used++;
+
+        ByteBuffer page = page(slot);
+        int index = slot & PAGE_MASK;
+        double yaw = Math.toRadians(origin.getYaw());
+        page.putDouble(doubleOffset(ORIGIN_X, index), origin.getX());
+        page.putDouble(doubleOffset(ORIGIN_Y, index), origin.getY());
+        page.putDouble(doubleOffset(ORIGIN_Z, index), origin.getZ());
+        page.putDouble(doubleOffset(ORIGIN_YAW, index), origin.getYaw());
+        page.putDouble(doubleOffset(COS, index), Math.cos(yaw));
+        page.putDouble(doubleOffset(SIN, index), Math.sin(yaw));
+        page.putLong(CHUNK_OFFSET + index * Long.BYTES, chunk);
+        page.putInt(FRAME_OFFSET + index * Integer.BYTES, -1);
+        return slot;
+    }
+
+    /**
+     * Hands the slot back. The stand must not be touched through it afterwards.
+     */
+    public synchronized void release(int slot) {
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = slot;
+        used--;
+        if (used == 0) {
+            // Nothing is animated any more, let the memory go
+            pages = new ByteBuffer[0];
+            free = new int[16];
+            freeCount = 0;
+            next = 0;
+        }
+    }
+
+    public int getFrame(int slot) {
+        return page(slot).getInt(FRAME_OFFSET + (slot & PAGE_MASK) * Integer.BYTES);
+    }
+
+    public void setFrame(int slot, int frame) {
+        page(slot).putInt(FRAME_OFFSET + (slot & PAGE_MASK) * Integer.BYTES, frame);
+    }
+
+    public long getChunk(int slot) {
+        return page(slot).getLong(CHUNK_OFFSET + (slot & PAGE_MASK) * Long.BYTES);
+    }
+
+    public Location getOrigin(int slot, World world) {
+        ByteBuffer page = page(slot);
+        int index = slot & PAGE_MASK;
+        return new Location(world, page.getDouble(doubleOffset(ORIGIN_X, index)), page.getDouble(doubleOffset(ORIGIN_Y, index)),
+                page.getDouble(doubleOffset(ORIGIN_Z, index)), (float) page.getDouble(doubleOffset(ORIGIN_YAW, index)), 0);
+    }
+
+    /**
+     * Where the stand should be for an offset and yaw change taken from a clip, which are relative to the way the
+     * origin faces.
+     */
+    public Location getLocation(int slot, World world, double offsetX, double offsetY, double offsetZ, double yaw) {
+        ByteBuffer page = page(slot);
+        int index = slot & PAGE_MASK;
+        double cos = page.getDouble(doubleOffset(COS, index));
+        double sin = page.getDouble(doubleOffset(SIN, index));
+        return new Location(world,
+                page.getDouble(doubleOffset(ORIGIN_X, index)) + offsetX * cos - offsetZ * sin,
+                page.getDouble(doubleOffset(ORIGIN_Y, index)) + offsetY,
+                page.getDouble(doubleOffset(ORIGIN_Z, index)) + offsetX * sin + offsetZ * cos,
+                Location.normalizeYaw((float) (page.getDouble(doubleOffset(ORIGIN_YAW, index)) + yaw)), 0);
+    }
+
+    public synchronized int size() {
+        return used;
+    }
+
+    // Direct memory held by the store
+    public long getReservedBytes() {
+        return (long) pages.length * PAGE_BYTES;
+    }
+
+    private ByteBuffer page(int slot) {
+        return pages[slot >> PAGE_SHIFT];
+    }
+
+    private static int doubleOffset(int column, int index) {
+        return (column * PAGE_SIZE + index) * Double.BYTES;
+    }
+}
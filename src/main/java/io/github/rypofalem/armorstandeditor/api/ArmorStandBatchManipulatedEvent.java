@@ -0,0 +1,72 @@
+package io.github.rypofalem.armorstandeditor.api;
+
+import io.github.rypofalem.armorstandeditor.modes.EditMode;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Called before an edit is applied to a group of selected stands, once per chunk, instead of an
+ * {@link ArmorStandManipulatedEvent} per stand. Single edits still call ArmorStandManipulatedEvent.
+ * <p>
+ * Cancelling leaves every stand in the group untouched. Removing a delta from {@link #getDeltas()} leaves just that
+ * stand untouched.
+ */
+public class ArmorStandBatchManipulatedEvent extends Event implements Cancellable {
+    private boolean cancelled = false;
+    private final Player player;
+    private final EditMode mode;
+    private final List<StandDelta> deltas;
+
+    public ArmorStandBatchManipulatedEvent(Player player, EditMode mode, List<StandDelta> deltas) {
+        this.player = player;
+        this.mode = mode;
+        this.deltas = new ArrayList<>(deltas);
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public EditMode getMode() {
+        return mode;
+    }
+
+    // One per stand about to be edited. Entries can be removed, anything added is ignored
+    public List<StandDelta> getDeltas() {
+        return deltas;
+    }
+
+    public List<ArmorStand> getArmorStands() {
+        List<ArmorStand> armorStands = new ArrayList<>(deltas.size());
+        for (StandDelta delta : deltas) armorStands.add(delta.getArmorStand());
+        return armorStands;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /* Generated for Bukkit */
+    private static final HandlerList handlers = new HandlerList();
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.rypofalem.armorstandeditor.api;
+
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Player;
+import org.bukkit.util.EulerAngle;
+import org.bukkit.util.Vector;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lets other plugins edit armor stands the way ArmorStandEditor does: through the same protection checks, merged with
+ * other edits made to the stand in the same tick, and on the thread owning each stand when running on Folia.
+ * Registered with Bukkit's ServicesManager:
+ * <pre>
+ * ArmorStandEditService service = Bukkit.getServicesManager().load(ArmorStandEditService.class);
+ * </pre>
+ * Every method may be called from any thread. The edits happen later on the stand's own thread, and the returned future
+ * completes once they are done: with whether the stand was edited, or for collections with how many were.
+ * A stand is skipped when it is gone, already looks like that or the actor may not edit it. If an edit throws, the rest
+ * are still made and the future completes exceptionally with the first error.
+ * <p>
+ * The actor is the player the edit is made for and whose protections are checked. Pass null to skip the checks.
+ * Collections are worked through like a bulk edit: split by region and within ArmorStandEditor's bulk tick budget.
+ */
+public interface ArmorStandEditService {
+
+    enum Property { ARMS, VISIBLE, BASE_PLATE, GRAVITY, INVULNERABLE, GLOWING, SMALL, SLOTS_LOCKED }
+
+    CompletableFuture<Boolean> setPose(ArmorStand armorStand, PosePart part, EulerAngle angle, Player actor);
+
+    /**
+     * Sets the whole pose from PoseBuffer.SIZE radians, indexed by PoseBuffer.index(part, axis). The array is copied
+     * before this returns, so it may be reused straight away.
+     */
+    CompletableFuture<Boolean> setPose(ArmorStand armorStand, double[] pose, Player actor);
+
+    CompletableFuture<Integer> setPose(Collection<? extends ArmorStand> armorStands, double[] pose, Player actor);
+
+    /**
+     * Moves the stand to the location, which also sets its yaw. The actor has to be allowed to edit at both ends.
+     */
+    CompletableFuture<Boolean> transform(ArmorStand armorStand, Location location, Player actor);
+
+    /**
+     * Moves every stand by the offset and turns it by the given degrees. With an actor, a stand whose destination lies
+     * in another region (Folia) is skipped, as the destination can not be checked from the stand's thread.
+     */
+    CompletableFuture<Integer> transform(Collection<? extends ArmorStand> armorStands, Vector offset, float yaw, Player actor);
+
+    CompletableFuture<Boolean> setProperty(ArmorStand armorStand, Property property, boolean value, Player actor);
+
+    CompletableFuture<Integer> setProperty(Collection<? extends ArmorStand> armorStands, Property property, boolean value, Player actor);
+
+    /**
+     * Applies one of the preset poses from the preset menu.
+     *
+     * @throws IllegalArgumentException if there is no preset with that name, see getPresetNames
+     */
+    CompletableFuture<Boolean> applyPreset(ArmorStand armorStand, String preset, Player actor);
+
+    CompletableFuture<Integer> applyPreset(Collection<? extends ArmorStand> armorStands, String preset, Player actor);
+
+    Set<String> getPresetNames();
+}
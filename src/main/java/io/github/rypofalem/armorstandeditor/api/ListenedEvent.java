@@ -0,0 +1,36 @@
+package io.github.rypofalem.armorstandeditor.api;
+
+import org.bukkit.event.HandlerList;
+
+/**
+ * Whether anything listens to each of ArmorStandEditor's events, so the edit paths can skip creating and calling an
+ * event nobody will see. Most servers have no listeners for them at all.
+ * <p>
+ * The answer is cached and refreshed by ArmorStandEditor whenever a plugin is enabled or disabled, on reload and
+ * every few seconds in case a listener is registered later on. Until the first refresh every event counts as listened.
+ */
+public enum ListenedEvent {
+    ARMOR_STAND_MANIPULATED(ArmorStandManipulatedEvent.getHandlerList()),
+    ARMOR_STAND_BATCH_MANIPULATED(ArmorStandBatchManipulatedEvent.getHandlerList()),
+    ARMOR_STAND_TARGETED(ArmorStandTargetedEvent.getHandlerList()),
+    ARMOR_STAND_RENAME(ArmorStandRenameEvent.getHandlerList()),
+    ITEM_FRAME_MANIPULATED(ItemFrameManipulatedEvent.getHandlerList()),
+    ITEM_FRAME_TARGETED(ItemFrameTargetedEvent.getHandlerList()),
+    ITEM_FRAME_GLOW(ItemFrameGlowEvent.getHandlerList()),
+    PLAYER_OPEN_MENU(PlayerOpenMenuEvent.getHandlerList());
+
+    private final HandlerList handlers;
+    private volatile boolean listened = true;
+
+    ListenedEvent(HandlerList handlers) {
+        this.handlers = handlers;
+    }
+
+    public boolean isListened() {
+        return listened;
+    }
+
+    public static void refresh() {
+        for (ListenedEvent event : values()) event.listened = event.handlers.getRegisteredListeners().length > 0;
+    }
+}
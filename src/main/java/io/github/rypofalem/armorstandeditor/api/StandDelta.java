@@ -0,0 +1,102 @@
+package io.github.rypofalem.armorstandeditor.api;
+
+import io.github.rypofalem.armorstandeditor.modes.Axis;
+import io.github.rypofalem.armorstandeditor.modes.EditMode;
+import io.github.rypofalem.armorstandeditor.modes.PosePart;
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+
+/**
+ * What an edit is about to change on one stand, so listeners don't have to read the whole stand to find out.
+ * <ul>
+ *     <li>POSE: one axis of one pose part, old and new value in radians</li>
+ *     <li>MOVE: the stand's location before and after</li>
+ *     <li>ROTATE: the location before and after, old and new yaw in degrees</li>
+ *     <li>PROPERTY: anything else (toggles, paste, reset), only the mode is given</li>
+ * </ul>
+ */
+public final class StandDelta {
+
+    public enum Type { POSE, MOVE, ROTATE, PROPERTY }
+
+    private final ArmorStand armorStand;
+    private final Type type;
+    private final EditMode mode;
+    private final PosePart part;
+    private final Axis axis;
+    private final double oldValue;
+    private final double newValue;
+    private final Location from;
+    private final Location to;
+
+    private StandDelta(ArmorStand armorStand, Type type, EditMode mode, PosePart part, Axis axis,
+                       double oldValue, double newValue, Location from, Location to) {
+        this.armorStand = armorStand;
+        this.type = type;
+        this.mode = mode;
+        this.part = part;
+        this.axis = axis;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static StandDelta pose(ArmorStand armorStand, EditMode mode, PosePart part, Axis axis, double oldValue, double newValue) {
+        return new StandDelta(armorStand, Type.POSE, mode, part, axis, oldValue, newValue, null, null);
+    }
+
+    public static StandDelta move(ArmorStand armorStand, Location from, Location to) {
+        return new StandDelta(armorStand, Type.MOVE, EditMode.PLACEMENT, null, null, Double.NaN, Double.NaN, from.clone(), to.clone());
+    }
+
+    public static StandDelta rotate(ArmorStand armorStand, Location from, Location to) {
+        return new StandDelta(armorStand, Type.ROTATE, EditMode.ROTATE, null, null, from.getYaw(), to.getYaw(), from.clone(), to.clone());
+    }
+
+    public static StandDelta property(ArmorStand armorStand, EditMode mode) {
+        return new StandDelta(armorStand, Type.PROPERTY, mode, null, null, Double.NaN, Double.NaN, null, null);
+    }
+
+    public ArmorStand getArmorStand() {
+        return armorStand;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public EditMode getMode() {
+        return mode;
+    }
+
+    // Null unless the type is POSE
+    public PosePart getPart() {
+        return part;
+    }
+
+    // Null unless the type is POSE
+    public Axis getAxis() {
+        return axis;
+    }
+
+    // NaN unless the type is POSE or ROTATE
+    public double getOldValue() {
+        return oldValue;
+    }
+
+    // NaN unless the type is POSE or ROTATE
+    public double getNewValue() {
+        return newValue;
+    }
+
+    // Null unless the type is MOVE or ROTATE. Always a copy
+    public Location getFrom() {
+        return from == null ? null : from.clone();
+    }
+
+    // Null unless the type is MOVE or ROTATE. Always a copy
+    public Location getTo() {
+        return to == null ? null : to.clone();
+    }
+}
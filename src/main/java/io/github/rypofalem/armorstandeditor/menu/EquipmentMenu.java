@@ -21,6 +21,7 @@ package io.github.rypofalem.armorstandeditor.menu;
 
 import io.github.rypofalem.armorstandeditor.Debug;
 import io.github.rypofalem.armorstandeditor.PlayerEditor;
+import io.github.rypofalem.armorstandeditor.Scheduler;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -181,12 +182,15 @@ public class EquipmentMenu {
         };
     }
 
+    // Called on the stand's thread: the equipment is read here, the inventory is opened on the player's thread
     public void openMenu() {
-        pe.getPlayer().closeInventory();
         if (pe.getPlayer().hasPermission("asedit.equipment")) {
             fillInventory();
-            debug.log("Player '" + pe.getPlayer().getDisplayName() + "' has opened the Equipment Menu (45).");
-            pe.getPlayer().openInventory(menuInv);
+            pe.postToPlayer(() -> {
+                pe.getPlayer().closeInventory();
+                debug.log("Player '" + pe.getPlayer().getDisplayName() + "' has opened the Equipment Menu (45).");
+                pe.getPlayer().openInventory(menuInv);
+            });
         }
     }
 
@@ -206,13 +210,15 @@ public class EquipmentMenu {
         debug.log("Main: " + mainHand);
         debug.log("Off: " + offHand);
 
-        EntityEquipment eq = armorstand.getEquipment();
-        eq.setHelmet(helmet);
-        eq.setChestplate(chest);
-        eq.setLeggings(pants);
-        eq.setBoots(boots);
-        eq.setItemInMainHand(mainHand);
-        eq.setItemInOffHand(offHand);
+        Scheduler.executeAtEntity(pe.plugin, armorstand, () -> {
+            EntityEquipment eq = armorstand.getEquipment();
+            eq.setHelmet(helmet);
+            eq.setChestplate(chest);
+            eq.setLeggings(pants);
+            eq.setBoots(boots);
+            eq.setItemInMainHand(mainHand);
+            eq.setItemInOffHand(offHand);
+        }, null);
     }
 
     public static String getName() {
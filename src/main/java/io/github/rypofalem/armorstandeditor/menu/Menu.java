@@ -21,6 +21,7 @@ package io.github.rypofalem.armorstandeditor.menu;
 
 import io.github.rypofalem.armorstandeditor.ArmorStandEditorPlugin;
 import io.github.rypofalem.armorstandeditor.Debug;
+import io.github.rypofalem.armorstandeditor.LoadShedder;
 import io.github.rypofalem.armorstandeditor.PlayerEditor;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -294,7 +295,8 @@ public class Menu {
 
     public void openMenu() {
         if (pe.getPlayer().hasPermission("asedit.basic")) {
-            fillInventory();
+            // Keep the icons rendered when the menu was created while the server is shedding load
+            if (!pe.plugin.getLoadShedder().isShedding(LoadShedder.Level.NO_MENU_RENDER)) fillInventory();
             debug.log("Player '" + pe.getPlayer().getDisplayName() + "' has opened the Main ASE Menu");
             pe.getPlayer().openInventory(menuInv);
         }
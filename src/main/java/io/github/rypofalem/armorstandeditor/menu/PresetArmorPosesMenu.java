@@ -21,7 +21,10 @@ package io.github.rypofalem.armorstandeditor.menu;
 
 import io.github.rypofalem.armorstandeditor.ArmorStandEditorPlugin;
 import io.github.rypofalem.armorstandeditor.Debug;
+import io.github.rypofalem.armorstandeditor.DiffApplier;
 import io.github.rypofalem.armorstandeditor.PlayerEditor;
+import io.github.rypofalem.armorstandeditor.Scheduler;
+import io.github.rypofalem.armorstandeditor.modes.PoseBuffer;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -33,12 +36,43 @@ import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
-import org.bukkit.util.EulerAngle;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class PresetArmorPosesMenu {
 
+    // Preset poses in radians, converted once. Argument order: right arm, left arm, right leg, left leg, head, body
+    private static final PoseBuffer SITTING_POSE = PoseBuffer.ofDegrees(345, 0, 10, 350, 0, 350, 280, 20, 0, 280, 340, 0, 0, 0, 0, 0, 0, 0);
+    private static final PoseBuffer WAVING_POSE = PoseBuffer.ofDegrees(220, 20, 0, 350, 0, 350, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    private static final PoseBuffer GREETING_1_POSE = PoseBuffer.ofDegrees(260, 20, 0, 260, 340, 0, 340, 0, 0, 20, 0, 0, 0, 0, 0, 0, 0, 0);
+    private static final PoseBuffer GREETING_2_POSE = PoseBuffer.ofDegrees(260, 10, 0, 260, 350, 0, 320, 0, 0, 10, 0, 0, 340, 0, 350, 0, 0, 0);
+    private static final PoseBuffer ARCHER_POSE = PoseBuffer.ofDegrees(270, 350, 0, 280, 50, 0, 340, 0, 10, 20, 0, 350, 0, 0, 0, 0, 0, 0);
+    private static final PoseBuffer DANCING_POSE = PoseBuffer.ofDegrees(14, 0, 110, 20, 0, 250, 250, 330, 0, 15, 330, 0, 350, 350, 0, 0, 0, 0);
+    private static final PoseBuffer CHEERS_POSE = PoseBuffer.ofDegrees(250, 60, 0, 20, 10, 0, 10, 0, 0, 350, 0, 0, 340, 0, 0, 0, 0, 0);
+    private static final PoseBuffer HANGING_POSE = PoseBuffer.ofDegrees(1, 33, 67, -145, -33, -4, -42, 21, 1, -100, 0, -1, -29, -38, -18, 0, -4, 0);
+    private static final PoseBuffer PRESENTING_POSE = PoseBuffer.ofDegrees(280, 330, 0, 10, 0, 350, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    private static final PoseBuffer FISHING_POSE = PoseBuffer.ofDegrees(300, 320, 0, 300, 40, 0, 280, 20, 0, 280, 340, 0, 0, 0, 0, 0, 0, 0);
+
+    // By the lang path of their icon, for other plugins applying presets through the edit service
+    private static final Map<String, PoseBuffer> PRESETS = new LinkedHashMap<>();
+
+    static {
+        PRESETS.put("sitting", SITTING_POSE);
+        PRESETS.put("waving", WAVING_POSE);
+        PRESETS.put("greeting 1", GREETING_1_POSE);
+        PRESETS.put("greeting 2", GREETING_2_POSE);
+        PRESETS.put("cheers", CHEERS_POSE);
+        PRESETS.put("archer", ARCHER_POSE);
+        PRESETS.put("dancing", DANCING_POSE);
+        PRESETS.put("hanging", HANGING_POSE);
+        PRESETS.put("present", PRESENTING_POSE);
+        PRESETS.put("fishing", FISHING_POSE);
+    }
+
     private Inventory menuInv;
     private Debug debug;
     private final PlayerEditor pe;
@@ -203,31 +237,40 @@ public class PresetArmorPosesMenu {
         return name;
     }
 
+    // Null if there is no such preset. Shared, so must not be changed
+    public static PoseBuffer getPreset(String name) {
+        return PRESETS.get(name);
+    }
+
+    public static Set<String> getPresetNames() {
+        return Collections.unmodifiableSet(PRESETS.keySet());
+    }
+
     public void handlePresetPose(String itemName, Player player) {
         if (itemName == null || player == null) return;
 
         debug.log("Player '" + player.getDisplayName() + "' chose preset pose '" + itemName + "'");
 
         if (itemName.equals(SITTING)) {
-            setPresetPose(player, 345, 0, 10, 350, 0, 350, 280, 20, 0, 280, 340, 0, 0, 0, 0, 0, 0, 0);
+            applyPreset(player, SITTING_POSE);
         } else if (itemName.equals(WAVING)) {
-            setPresetPose(player, 220, 20, 0, 350, 0, 350, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+            applyPreset(player, WAVING_POSE);
         } else if (itemName.equals(GREETING_1)) {
-            setPresetPose(player, 260, 20, 0, 260, 340, 0, 340, 0, 0, 20, 0, 0, 0, 0, 0, 0, 0, 0);
+            applyPreset(player, GREETING_1_POSE);
         } else if (itemName.equals(GREETING_2)) {
-            setPresetPose(player, 260, 10, 0, 260, 350, 0, 320, 0, 0, 10, 0, 0, 340, 0, 350, 0, 0, 0);
+            applyPreset(player, GREETING_2_POSE);
         } else if (itemName.equals(ARCHER)) {
-            setPresetPose(player, 270, 350, 0, 280, 50, 0, 340, 0, 10, 20, 0, 350, 0, 0, 0, 0, 0, 0);
+            applyPreset(player, ARCHER_POSE);
         } else if (itemName.equals(DANCING)) {
-            setPresetPose(player, 14, 0, 110, 20, 0, 250, 250, 330, 0, 15, 330, 0, 350, 350, 0, 0, 0, 0);
+            applyPreset(player, DANCING_POSE);
         } else if (itemName.equals(CHEERS)) {
-            setPresetPose(player, 250, 60, 0, 20, 10, 0, 10, 0, 0, 350, 0, 0, 340, 0, 0, 0, 0, 0);
+            applyPreset(player, CHEERS_POSE);
         } else if (itemName.equals(HANGING)) {
-            setPresetPose(player, 1, 33, 67, -145, -33, -4, -42, 21, 1, -100, 0, -1, -29, -38, -18, 0, -4, 0);
+            applyPreset(player, HANGING_POSE);
         } else if (itemName.equals(PRESENTING)) {
-            setPresetPose(player, 280, 330, 0, 10, 0, 350, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+            applyPreset(player, PRESENTING_POSE);
         } else if (itemName.equals(FISHING)) {
-            setPresetPose(player, 300, 320, 0, 300, 40, 0, 280, 20, 0, 280, 340, 0, 0, 0, 0, 0, 0, 0);
+            applyPreset(player, FISHING_POSE);
         } else if (itemName.equals(BACKTOMENU)) {
             player.playSound(player.getLocation(), Sound.BLOCK_COMPARATOR_CLICK, 1, 1);
             player.closeInventory();
@@ -250,40 +293,21 @@ public class PresetArmorPosesMenu {
                               double headRoll,     double headYaw,     double headPitch,
                               double bodyRoll,     double bodyYaw,     double bodyPitch) {
 
-        if (!armorStand.isValid()) return;
+        applyPreset(player, PoseBuffer.ofDegrees(rightArmRoll, rightArmYaw, rightArmPitch, leftArmRoll, leftArmYaw, leftArmPitch,
+                rightLegRoll, rightLegYaw, rightLegPitch, leftLegRoll, leftLegYaw, leftLegPitch,
+                headRoll, headYaw, headPitch, bodyRoll, bodyYaw, bodyPitch));
+    }
+
+    private void applyPreset(Player player, PoseBuffer pose) {
         if (!player.hasPermission("asedit.basic")) return;
 
-        armorStand.setRightArmPose(new EulerAngle(
-                Math.toRadians(rightArmRoll),
-                Math.toRadians(rightArmYaw),
-                Math.toRadians(rightArmPitch)
-        ));
-
-        armorStand.setLeftArmPose(new EulerAngle(
-                Math.toRadians(leftArmRoll),
-                Math.toRadians(leftArmYaw),
-                Math.toRadians(leftArmPitch)
-        ));
-
-        armorStand.setRightLegPose(new EulerAngle(
-                Math.toRadians(rightLegRoll),
-                Math.toRadians(rightLegYaw),
-                Math.toRadians(rightLegPitch)));
-
-        armorStand.setLeftLegPose(new EulerAngle(
-                Math.toRadians(leftLegRoll),
-                Math.toRadians(leftLegYaw),
-                Math.toRadians(leftLegPitch)));
-
-        armorStand.setBodyPose(new EulerAngle(
-                Math.toRadians(bodyRoll),
-                Math.toRadians(bodyYaw),
-                Math.toRadians(bodyPitch)));
-
-        armorStand.setHeadPose(new EulerAngle(
-                Math.toRadians(headRoll),
-                Math.toRadians(headYaw),
-                Math.toRadians(headPitch)));
+        // The click arrives on the player's thread, the pose has to be applied on the stand's
+        Scheduler.executeAtEntity(plugin, armorStand, () -> {
+            if (!armorStand.isValid()) return;
+            plugin.getCoalescer().flush(armorStand);
+            int skipped = DiffApplier.applyPoses(armorStand, pose);
+            debug.log("Preset pose skipped " + skipped + " unchanged poses");
+        }, null);
     }
 
     // ----- color helpers (single set) -----
@@ -22,6 +22,7 @@ package io.github.rypofalem.armorstandeditor.menu;
 import io.github.rypofalem.armorstandeditor.ArmorStandEditorPlugin;
 import io.github.rypofalem.armorstandeditor.Debug;
 import io.github.rypofalem.armorstandeditor.PlayerEditor;
+import io.github.rypofalem.armorstandeditor.Scheduler;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -296,8 +297,10 @@ public class SizeMenu extends ASEHolder {
         String miniOn  = miniatureTitle(true);
         String miniOff = miniatureTitle(false);
         if (itemName.equals(miniOn) || itemName.equals(miniOff)) {
-            if (!as.isValid() || !player.hasPermission("asedit.togglesize")) return;
-            as.setSmall(!as.isSmall());  // toggle
+            if (!player.hasPermission("asedit.togglesize")) return;
+            Scheduler.executeAtEntity(plugin, as, () -> {
+                if (as.isValid()) as.setSmall(!as.isSmall());  // toggle
+            }, null);
             playChimeSound(player);
             player.closeInventory();
             return;
@@ -334,9 +337,15 @@ public class SizeMenu extends ASEHolder {
 
     private void setArmorStandScale(Player player, String itemName, double scaleValue) {
         debug.log("Setting the Scale of the ArmorStand");
-        if (!as.isValid()) return;
         if (!player.hasPermission("asedit.togglesize")) return;
 
+        // The click arrives on the player's thread, the attribute has to be changed on the stand's
+        Scheduler.executeAtEntity(plugin, as, () -> {
+            if (as.isValid()) applyArmorStandScale(itemName, scaleValue);
+        }, null);
+    }
+
+    private void applyArmorStandScale(String itemName, double scaleValue) {
         double currentScaleValue;
         double newScaleValue;
 
@@ -19,28 +19,25 @@
 
 package io.github.rypofalem.armorstandeditor.modes;
 
-import io.github.rypofalem.armorstandeditor.ArmorStandEditorPlugin;
+import io.github.rypofalem.armorstandeditor.Capabilities;
 import org.bukkit.attribute.Attribute;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.ArmorStand;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.util.EulerAngle;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class ArmorStandData {
-    public EulerAngle headPos, leftArmPos, rightArmPos, bodyPos, leftLegPos, rightLegPos;
+    public final PoseBuffer pose;
     public boolean visible, size, basePlate, gravity, showArms;
     public ItemStack head, body, legs, feetsies, rightHand, leftHand;
     public double attributeScale;
-    private ArmorStandEditorPlugin plugin = ArmorStandEditorPlugin.instance();
 
     ArmorStandData(ArmorStand as) {
-        this.headPos = as.getHeadPose();
-        this.leftArmPos = as.getLeftArmPose();
-        this.rightArmPos = as.getRightArmPose();
-        this.bodyPos = as.getBodyPose();
-        this.leftLegPos = as.getLeftLegPose();
-        this.rightLegPos = as.getRightLegPose();
+        this.pose = new PoseBuffer(as);
         this.size = as.isSmall();
-        if (plugin.getNmsVersion().compareTo("1.21.4") >= 0 || plugin.getNmsVersion().compareTo("v1_21_R3") >= 0) {
+        if (Capabilities.SCALE_ATTRIBUTE) {
             this.attributeScale = as.getAttribute(Attribute.SCALE).getValue();
         }
         this.basePlate = as.hasBasePlate();
@@ -56,4 +53,50 @@ public class ArmorStandData {
         this.rightHand = as.getEquipment().getItemInMainHand();
         this.leftHand = as.getEquipment().getItemInOffHand();
     }
+
+    public static ArmorStandData of(ArmorStand as) {
+        return new ArmorStandData(as);
+    }
+
+    private ArmorStandData() {
+        this.pose = new PoseBuffer();
+    }
+
+    // Used to keep paste data of bulk edits across restarts
+    public void save(ConfigurationSection section) {
+        List<Double> angles = new ArrayList<>(PoseBuffer.SIZE);
+        for (double angle : pose.array()) angles.add(angle);
+        section.set("pose", angles);
+        section.set("visible", visible);
+        section.set("size", size);
+        section.set("basePlate", basePlate);
+        section.set("gravity", gravity);
+        section.set("showArms", showArms);
+        section.set("attributeScale", attributeScale);
+        section.set("head", head);
+        section.set("body", body);
+        section.set("legs", legs);
+        section.set("feetsies", feetsies);
+        section.set("rightHand", rightHand);
+        section.set("leftHand", leftHand);
+    }
+
+    public static ArmorStandData load(ConfigurationSection section) {
+        ArmorStandData data = new ArmorStandData();
+        List<Double> angles = section.getDoubleList("pose");
+        for (int i = 0; i < PoseBuffer.SIZE && i < angles.size(); i++) data.pose.array()[i] = angles.get(i);
+        data.visible = section.getBoolean("visible", true);
+        data.size = section.getBoolean("size");
+        data.basePlate = section.getBoolean("basePlate", true);
+        data.gravity = section.getBoolean("gravity", true);
+        data.showArms = section.getBoolean("showArms");
+        data.attributeScale = section.getDouble("attributeScale", 1);
+        data.head = section.getItemStack("head");
+        data.body = section.getItemStack("body");
+        data.legs = section.getItemStack("legs");
+        data.feetsies = section.getItemStack("feetsies");
+        data.rightHand = section.getItemStack("rightHand");
+        data.leftHand = section.getItemStack("leftHand");
+        return data;
+    }
 }
@@ -24,7 +24,7 @@ public enum EditMode {
     COPY("Copy"), PASTE("Paste"), HEAD("Head"), BODY("Body"), LEFTARM("LeftArm"), RIGHTARM("RightArm"), LEFTLEG("LeftLeg"),
     RIGHTLEG("RightLeg"), PLACEMENT("Placement"), DISABLESLOTS("DisableSlots"), ROTATE("Rotate"), EQUIPMENT("Equipment"), PRESET("Preset"),
     RESET("Reset"), ITEMFRAME("ItemFrame"), ITEMFRAMEGLOW("ItemFrameGlow"),  VULNERABILITY("Vulnerability"), PLAYERHEAD("playerheadmenu"),
-    GLOWING("armorstandglow");
+    GLOWING("armorstandglow"), SELECT("Select"), DRAG("Drag");
 
     private String name;
 
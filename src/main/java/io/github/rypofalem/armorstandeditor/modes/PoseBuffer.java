@@ -0,0 +1,112 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor.modes;
+
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.util.EulerAngle;
+
+/**
+ * All six pose parts of an armor stand as 18 radians in one flat array, indexed by part and axis.
+ * Used by the edit math, the copy slots, presets and reset so a pose can be read, changed and compared
+ * without creating EulerAngle objects. Those are only made when the pose is handed to Bukkit.
+ */
+public final class PoseBuffer {
+    public static final int SIZE = PosePart.values().length * 3;
+
+    private final double[] values = new double[SIZE];
+
+    public PoseBuffer() {
+    }
+
+    public PoseBuffer(ArmorStand armorStand) {
+        read(armorStand);
+    }
+
+    public static int index(PosePart part, Axis axis) {
+        return part.ordinal() * 3 + axis.ordinal();
+    }
+
+    public double get(PosePart part, Axis axis) {
+        return values[index(part, axis)];
+    }
+
+    public void set(PosePart part, Axis axis, double radians) {
+        values[index(part, axis)] = radians;
+    }
+
+    public void set(PosePart part, double x, double y, double z) {
+        int i = part.ordinal() * 3;
+        values[i] = x;
+        values[i + 1] = y;
+        values[i + 2] = z;
+    }
+
+    public void copyFrom(PoseBuffer other) {
+        System.arraycopy(other.values, 0, values, 0, SIZE);
+    }
+
+    // Direct access for code working on the whole pose at once. Index with index(part, axis)
+    public double[] array() {
+        return values;
+    }
+
+    public void read(ArmorStand armorStand) {
+        for (PosePart part : PosePart.values()) read(armorStand, part);
+    }
+
+    public void read(ArmorStand armorStand, PosePart part) {
+        EulerAngle angle = part.get(armorStand);
+        set(part, angle.getX(), angle.getY(), angle.getZ());
+    }
+
+    public void write(ArmorStand armorStand, PosePart part) {
+        part.set(armorStand, toEulerAngle(part));
+    }
+
+    public EulerAngle toEulerAngle(PosePart part) {
+        int i = part.ordinal() * 3;
+        return new EulerAngle(values[i], values[i + 1], values[i + 2]);
+    }
+
+    // Whether the part matches the given angle exactly
+    public boolean matches(PosePart part, EulerAngle angle) {
+        int i = part.ordinal() * 3;
+        return values[i] == angle.getX() && values[i + 1] == angle.getY() && values[i + 2] == angle.getZ();
+    }
+
+    /**
+     * Builds a pose from degrees, in the argument order used by the preset poses.
+     */
+    public static PoseBuffer ofDegrees(double rightArmRoll, double rightArmYaw, double rightArmPitch,
+                                       double leftArmRoll,  double leftArmYaw,  double leftArmPitch,
+                                       double rightLegRoll, double rightLegYaw, double rightLegPitch,
+                                       double leftLegRoll,  double leftLegYaw,  double leftLegPitch,
+                                       double headRoll,     double headYaw,     double headPitch,
+                                       double bodyRoll,     double bodyYaw,     double bodyPitch) {
+        PoseBuffer pose = new PoseBuffer();
+        pose.set(PosePart.RIGHTARM, Math.toRadians(rightArmRoll), Math.toRadians(rightArmYaw), Math.toRadians(rightArmPitch));
+        pose.set(PosePart.LEFTARM, Math.toRadians(leftArmRoll), Math.toRadians(leftArmYaw), Math.toRadians(leftArmPitch));
+        pose.set(PosePart.RIGHTLEG, Math.toRadians(rightLegRoll), Math.toRadians(rightLegYaw), Math.toRadians(rightLegPitch));
+        pose.set(PosePart.LEFTLEG, Math.toRadians(leftLegRoll), Math.toRadians(leftLegYaw), Math.toRadians(leftLegPitch));
+        pose.set(PosePart.HEAD, Math.toRadians(headRoll), Math.toRadians(headYaw), Math.toRadians(headPitch));
+        pose.set(PosePart.BODY, Math.toRadians(bodyRoll), Math.toRadians(bodyYaw), Math.toRadians(bodyPitch));
+        return pose;
+    }
+}
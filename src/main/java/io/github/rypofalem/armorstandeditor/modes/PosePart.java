@@ -0,0 +1,72 @@
+/*
+ * ArmorStandEditor: Bukkit plugin to allow editing armor stand attributes
+ * Copyright (C) 2016-2023  RypoFalem
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package io.github.rypofalem.armorstandeditor.modes;
+
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.util.EulerAngle;
+
+public enum PosePart {
+    HEAD("Head"), BODY("Body"), LEFTARM("LeftArm"), RIGHTARM("RightArm"), LEFTLEG("LeftLeg"), RIGHTLEG("RightLeg");
+
+    private String name;
+
+    PosePart(String name) {
+        this.name = name;
+    }
+
+    public EulerAngle get(ArmorStand armorStand) {
+        return switch (this) {
+            case HEAD -> armorStand.getHeadPose();
+            case BODY -> armorStand.getBodyPose();
+            case LEFTARM -> armorStand.getLeftArmPose();
+            case RIGHTARM -> armorStand.getRightArmPose();
+            case LEFTLEG -> armorStand.getLeftLegPose();
+            case RIGHTLEG -> armorStand.getRightLegPose();
+        };
+    }
+
+    public void set(ArmorStand armorStand, EulerAngle angle) {
+        switch (this) {
+            case HEAD -> armorStand.setHeadPose(angle);
+            case BODY -> armorStand.setBodyPose(angle);
+            case LEFTARM -> armorStand.setLeftArmPose(angle);
+            case RIGHTARM -> armorStand.setRightArmPose(angle);
+            case LEFTLEG -> armorStand.setLeftLegPose(angle);
+            case RIGHTLEG -> armorStand.setRightLegPose(angle);
+        }
+    }
+
+    // The pose part edited by the given mode, or null if the mode does not edit a pose
+    public static PosePart fromEditMode(EditMode mode) {
+        return switch (mode) {
+            case HEAD -> HEAD;
+            case BODY -> BODY;
+            case LEFTARM -> LEFTARM;
+            case RIGHTARM -> RIGHTARM;
+            case LEFTLEG -> LEFTLEG;
+            case RIGHTLEG -> RIGHTLEG;
+            default -> null;
+        };
+    }
+
+    public String toString() {
+        return name;
+    }
+}